@@ -0,0 +1,148 @@
+package com.example.filemanager;
+
+import java.io.File;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Type-ahead filter over a directory listing. Matching runs on a dedicated background thread
+ * against names that are lowercased and stripped of accents once per listing. When a query
+ * extends the previous one, only the previous matches are rechecked, and a newer query cancels
+ * any match still in progress.
+ */
+public class DirectoryFilter {
+
+    public interface Callback {
+        /** Called on the filter thread, only for the most recent query. */
+        void onFilterResult(String query, List<File> matches);
+    }
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile Source source = new Source(Collections.<File>emptyList());
+    private Future<?> pending;
+
+    // Only touched on the filter thread
+    private Source lastSource;
+    private String lastQuery;
+    private int[] lastMatches;
+    private int lastMatchCount;
+
+    public void setSource(List<File> files) {
+        generation.incrementAndGet();
+        final Source newSource = new Source(new ArrayList<>(files));
+        source = newSource;
+
+        // Prepare the names right away so the first keystroke only has to match
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                newSource.normalizedNames();
+            }
+        });
+    }
+
+    public synchronized void filter(final String query, final Callback callback) {
+        final int queryGeneration = generation.incrementAndGet();
+        final Source querySource = source;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                List<File> matches = match(querySource, normalize(query), queryGeneration);
+                if (matches != null && generation.get() == queryGeneration) {
+                    callback.onFilterResult(query, matches);
+                }
+            }
+        });
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+
+    static String normalize(String name) {
+        if (isAscii(name)) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isAscii(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns null if a newer query or listing arrived while matching
+    private List<File> match(Source querySource, String query, int queryGeneration) {
+        String[] names = querySource.normalizedNames();
+
+        // Matches for "abc" are a subset of the matches for "ab", so refine instead of rescanning
+        boolean refine = querySource == lastSource && lastQuery != null && query.startsWith(lastQuery);
+        int candidateCount = refine ? lastMatchCount : names.length;
+        int[] matches = new int[candidateCount];
+        int matchCount = 0;
+
+        for (int i = 0; i < candidateCount; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation.get() != queryGeneration) {
+                return null;
+            }
+            int index = refine ? lastMatches[i] : i;
+            if (names[index].contains(query)) {
+                matches[matchCount++] = index;
+            }
+        }
+
+        lastSource = querySource;
+        lastQuery = query;
+        lastMatches = matches;
+        lastMatchCount = matchCount;
+
+        List<File> result = new ArrayList<>(matchCount);
+        for (int i = 0; i < matchCount; i++) {
+            result.add(querySource.files.get(matches[i]));
+        }
+        return result;
+    }
+
+    private static class Source {
+        final List<File> files;
+        private String[] normalizedNames;
+
+        Source(List<File> files) {
+            this.files = files;
+        }
+
+        // Computed once on the filter thread and reused by every query on this listing
+        String[] normalizedNames() {
+            if (normalizedNames == null) {
+                String[] names = new String[files.size()];
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = normalize(files.get(i).getName());
+                }
+                normalizedNames = names;
+            }
+            return normalizedNames;
+        }
+    }
+}
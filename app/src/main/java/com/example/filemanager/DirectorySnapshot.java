@@ -0,0 +1,271 @@
+package com.example.filemanager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorted listing of the last visited directory plus its scroll position, persisted so the
+ * next cold start can render it immediately and revalidate against the directory mtime later.
+ * Each entry keeps the type, size, mtime and item count it was shown with, so the restored
+ * rows bind without touching the file system.
+ *
+ * Entry names are front-coded: each name stores the length of the prefix it shares with the
+ * previous name followed by the remaining suffix, which keeps sorted listings compact.
+ */
+public class DirectorySnapshot {
+
+    private static final int MAGIC = 0x464d534e; // "FMSN"
+    private static final int VERSION = 2;
+    private static final String PARENT_ENTRY = "..";
+
+    private static final int FLAG_METADATA = 1;
+    private static final int FLAG_DIRECTORY = 2;
+    private static final int UNKNOWN_COUNT = -1;
+
+    // A write in progress, possibly from an activity that is being replaced, finishes before a read
+    private static final Object FILE_LOCK = new Object();
+
+    private final String directoryPath;
+    private final long directoryModified;
+    private final int scrollPosition;
+    private final int scrollOffset;
+    private final List<String> entryNames;
+    // Parallel to entryNames; null and UNKNOWN_COUNT where nothing was known
+    private final List<StorageEntry> entries;
+    private final List<Integer> itemCounts;
+
+    public DirectorySnapshot(String directoryPath, long directoryModified, int scrollPosition,
+                             int scrollOffset, List<String> entryNames, List<StorageEntry> entries,
+                             List<Integer> itemCounts) {
+        this.directoryPath = directoryPath;
+        this.directoryModified = directoryModified;
+        this.scrollPosition = scrollPosition;
+        this.scrollOffset = scrollOffset;
+        this.entryNames = entryNames;
+        this.entries = entries;
+        this.itemCounts = itemCounts;
+    }
+
+    /**
+     * Captures a listing together with whatever metadata was known for it. Both maps are keyed
+     * by absolute path, as the file list adapter keeps them.
+     */
+    public static DirectorySnapshot fromFileList(File directory, long directoryModified, List<File> files,
+                                                 Map<String, StorageEntry> knownEntries,
+                                                 Map<String, Integer> knownItemCounts,
+                                                 int scrollPosition, int scrollOffset) {
+        File parent = directory.getParentFile();
+        List<String> names = new ArrayList<>(files.size());
+        List<StorageEntry> entries = new ArrayList<>(files.size());
+        List<Integer> itemCounts = new ArrayList<>(files.size());
+        for (File file : files) {
+            if (file.equals(parent)) {
+                names.add(PARENT_ENTRY);
+                entries.add(null);
+                itemCounts.add(UNKNOWN_COUNT);
+                continue;
+            }
+            String path = file.getAbsolutePath();
+            Integer itemCount = knownItemCounts.get(path);
+            names.add(file.getName());
+            entries.add(knownEntries.get(path));
+            itemCounts.add(itemCount != null ? itemCount : UNKNOWN_COUNT);
+        }
+        return new DirectorySnapshot(directory.getAbsolutePath(), directoryModified,
+                scrollPosition, scrollOffset, names, entries, itemCounts);
+    }
+
+    public String getDirectoryPath() {
+        return directoryPath;
+    }
+
+    public long getDirectoryModified() {
+        return directoryModified;
+    }
+
+    public int getScrollPosition() {
+        return scrollPosition;
+    }
+
+    public int getScrollOffset() {
+        return scrollOffset;
+    }
+
+    public List<String> getEntryNames() {
+        return Collections.unmodifiableList(entryNames);
+    }
+
+    public List<File> toFileList() {
+        File directory = new File(directoryPath);
+        List<File> files = new ArrayList<>(entryNames.size());
+        for (String name : entryNames) {
+            if (PARENT_ENTRY.equals(name)) {
+                files.add(directory.getParentFile());
+            } else {
+                files.add(new File(directory, name));
+            }
+        }
+        return files;
+    }
+
+    /** Metadata of the entries it was known for, keyed by absolute path. */
+    public Map<String, StorageEntry> toEntries() {
+        Map<String, StorageEntry> result = new HashMap<>();
+        for (StorageEntry entry : entries) {
+            if (entry != null) {
+                result.put(entry.getPath(), entry);
+            }
+        }
+        return result;
+    }
+
+    /** Item counts of the directories they were known for, keyed by absolute path. */
+    public Map<String, Integer> toItemCounts() {
+        File directory = new File(directoryPath);
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < entryNames.size(); i++) {
+            if (itemCounts.get(i) != UNKNOWN_COUNT && !PARENT_ENTRY.equals(entryNames.get(i))) {
+                result.put(new File(directory, entryNames.get(i)).getAbsolutePath(), itemCounts.get(i));
+            }
+        }
+        return result;
+    }
+
+    // Writes and syncs a temporary file first so a crash mid-write never leaves a corrupt snapshot
+    public void write(File file) throws IOException {
+        synchronized (FILE_LOCK) {
+            writeLocked(file);
+        }
+    }
+
+    private void writeLocked(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream fileOut = new FileOutputStream(tempFile);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(directoryPath);
+            out.writeLong(directoryModified);
+            out.writeInt(scrollPosition);
+            out.writeInt(scrollOffset);
+            out.writeInt(entryNames.size());
+
+            String previous = "";
+            for (int i = 0; i < entryNames.size(); i++) {
+                String name = entryNames.get(i);
+                int shared = sharedPrefixLength(previous, name);
+                out.writeShort(shared);
+                out.writeUTF(name.substring(shared));
+                previous = name;
+
+                StorageEntry entry = entries.get(i);
+                if (entry == null) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(FLAG_METADATA | (entry.isDirectory() ? FLAG_DIRECTORY : 0));
+                    out.writeLong(entry.getLength());
+                    out.writeLong(entry.getLastModified());
+                }
+                out.writeInt(itemCounts.get(i));
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Unable to replace " + file.getName());
+        }
+    }
+
+    // Returns null if the snapshot is missing, from another format version or unreadable
+    public static DirectorySnapshot read(File file) {
+        synchronized (FILE_LOCK) {
+            return readLocked(file);
+        }
+    }
+
+    private static DirectorySnapshot readLocked(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            String directoryPath = in.readUTF();
+            long directoryModified = in.readLong();
+            int scrollPosition = in.readInt();
+            int scrollOffset = in.readInt();
+            int count = in.readInt();
+            if (count < 0) {
+                return null;
+            }
+
+            File directory = new File(directoryPath);
+            List<String> names = new ArrayList<>(Math.min(count, 1024));
+            List<StorageEntry> entries = new ArrayList<>(Math.min(count, 1024));
+            List<Integer> itemCounts = new ArrayList<>(Math.min(count, 1024));
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                int shared = in.readUnsignedShort();
+                if (shared > previous.length()) {
+                    return null;
+                }
+                String name = previous.substring(0, shared) + in.readUTF();
+                names.add(name);
+                previous = name;
+
+                int flags = in.readUnsignedByte();
+                if ((flags & FLAG_METADATA) != 0) {
+                    long length = in.readLong();
+                    long lastModified = in.readLong();
+                    entries.add(new StorageEntry(new File(directory, name).getAbsolutePath(),
+                            (flags & FLAG_DIRECTORY) != 0, length, lastModified));
+                } else {
+                    entries.add(null);
+                }
+                itemCounts.add(in.readInt());
+            }
+
+            return new DirectorySnapshot(directoryPath, directoryModified, scrollPosition, scrollOffset,
+                    names, entries, itemCounts);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static int sharedPrefixLength(String a, String b) {
+        int max = Math.min(Math.min(a.length(), b.length()), 0xFFFF);
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
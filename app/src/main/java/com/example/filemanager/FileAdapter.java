@@ -17,83 +17,152 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class FileAdapter extends ArrayAdapter<File> {
 
     private Context context;
     private List<File> fileList;
-
-    public FileAdapter(Context context, List<File> files) {
+    // Metadata from the directory listing, keyed by absolute path. Rows without an entry fall
+    // back to asking the file system directly.
+    private Map<String, StorageEntry> entries;
+    // Number of items in each directory row, keyed the same way
+    private Map<String, Integer> itemCounts;
+
+    public FileAdapter(Context context, List<File> files, Map<String, StorageEntry> entries,
+                       Map<String, Integer> itemCounts) {
         super(context, R.layout.file_item, files);
         this.context = context;
         this.fileList = files;
+        this.entries = entries;
+        this.itemCounts = itemCounts;
+    }
+
+    /** Adds metadata loaded after the listing was shown and rebinds the rows. */
+    public void putEntries(List<StorageEntry> loadedEntries, Map<String, Integer> loadedItemCounts) {
+        for (StorageEntry entry : loadedEntries) {
+            if (entry != null) {
+                entries.put(entry.getPath(), entry);
+            }
+        }
+        itemCounts.putAll(loadedItemCounts);
+        notifyDataSetChanged();
+    }
+
+    public Map<String, StorageEntry> getEntries() {
+        return entries;
+    }
+
+    public Map<String, Integer> getItemCounts() {
+        return itemCounts;
     }
 
     @NonNull
     @Override
     public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-        ViewHolder viewHolder;
+        PerfMetrics.beginSection("bind");
+        long bindStart = System.nanoTime();
+        int fsCalls = 0;
+        try {
+            ViewHolder viewHolder;
 
-        if (convertView == null) {
-            convertView = LayoutInflater.from(context).inflate(R.layout.file_item, parent, false);
+            if (convertView == null) {
+                convertView = LayoutInflater.from(context).inflate(R.layout.file_item, parent, false);
 
-            viewHolder = new ViewHolder();
-            viewHolder.fileName = convertView.findViewById(R.id.file_name);
-            viewHolder.fileDetails = convertView.findViewById(R.id.file_details);
-            viewHolder.fileIcon = convertView.findViewById(R.id.file_icon);
+                viewHolder = new ViewHolder();
+                viewHolder.fileName = convertView.findViewById(R.id.file_name);
+                viewHolder.fileDetails = convertView.findViewById(R.id.file_details);
+                viewHolder.fileIcon = convertView.findViewById(R.id.file_icon);
 
-            convertView.setTag(viewHolder);
-        } else {
-            viewHolder = (ViewHolder) convertView.getTag();
-        }
+                convertView.setTag(viewHolder);
+            } else {
+                viewHolder = (ViewHolder) convertView.getTag();
+            }
 
-        File file = fileList.get(position);
+            File file = fileList.get(position);
 
-        if (file != null) {
-            String fileName = file.getName();
+            if (file != null) {
+                String fileName = file.getName();
 
-            // Check if this is the parent directory
-            if (position == 0 && file.getAbsolutePath().equals(file.getParentFile().getAbsolutePath())) {
-                fileName = "..";
-                viewHolder.fileDetails.setText("Parent Directory");
-                viewHolder.fileIcon.setImageResource(R.drawable.ic_folder);
-            } else {
-                // Set file name
-                viewHolder.fileName.setText(fileName);
-
-                // Format file details
-                if (file.isDirectory()) {
-                    int itemCount = 0;
-                    File[] contents = file.listFiles();
-                    if (contents != null) {
-                        itemCount = contents.length;
-                    }
-                    viewHolder.fileDetails.setText(itemCount + " items | " + formatDate(file.lastModified()));
+                // Check if this is the parent directory
+                if (position == 0 && file.getAbsolutePath().equals(file.getParentFile().getAbsolutePath())) {
+                    fileName = "..";
+                    viewHolder.fileDetails.setText("Parent Directory");
                     viewHolder.fileIcon.setImageResource(R.drawable.ic_folder);
                 } else {
-                    viewHolder.fileDetails.setText(formatFileSize(file.length()) + " | " + formatDate(file.lastModified()));
-                    viewHolder.fileIcon.setImageResource(getFileIconResource(file));
+                    // Set file name
+                    viewHolder.fileName.setText(fileName);
+
+                    // Format file details; every File call below is a stat or readdir on disk
+                    StorageEntry entry = entries.get(file.getAbsolutePath());
+                    boolean directory;
+                    if (entry != null) {
+                        directory = entry.isDirectory();
+                    } else {
+                        fsCalls++;
+                        directory = file.isDirectory();
+                    }
+
+                    if (directory) {
+                        Integer itemCount = itemCounts.get(file.getAbsolutePath());
+                        if (itemCount == null) {
+                            fsCalls++;
+                            String[] contents = file.list();
+                            itemCount = contents != null ? contents.length : 0;
+                            itemCounts.put(file.getAbsolutePath(), itemCount);
+                        }
+                        long lastModified;
+                        if (entry != null) {
+                            lastModified = entry.getLastModified();
+                        } else {
+                            fsCalls++;
+                            lastModified = file.lastModified();
+                        }
+                        viewHolder.fileDetails.setText(itemCount + " items | " + formatDate(lastModified));
+                        viewHolder.fileIcon.setImageResource(R.drawable.ic_folder);
+                    } else {
+                        long length;
+                        long lastModified;
+                        if (entry != null) {
+                            length = entry.getLength();
+                            lastModified = entry.getLastModified();
+                        } else {
+                            fsCalls += 2;
+                            length = file.length();
+                            lastModified = file.lastModified();
+                        }
+                        viewHolder.fileDetails.setText(formatFileSize(length) + " | " + formatDate(lastModified));
+                        viewHolder.fileIcon.setImageResource(getFileIconResource(file));
+                    }
                 }
             }
-        }
 
-        return convertView;
+            return convertView;
+        } finally {
+            PerfMetrics.BIND_FS_CALLS.record(fsCalls);
+            PerfMetrics.BIND.recordSince(bindStart);
+            PerfMetrics.endSection();
+        }
     }
 
-    private String formatFileSize(long size) {
+    static String formatFileSize(long size) {
         if (size <= 0) return "0 B";
         final String[] units = new String[]{"B", "KB", "MB", "GB", "TB"};
         int digitGroups = (int) (Math.log10(size) / Math.log10(1024));
         return String.format("%.1f %s", size / Math.pow(1024, digitGroups), units[digitGroups]);
     }
 
-    private String formatDate(long timeMillis) {
+    static String formatDate(long timeMillis) {
         SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
         return sdf.format(new Date(timeMillis));
     }
 
     private int getFileIconResource(File file) {
-        String fileName = file.getName().toLowerCase();
+        return getFileIconResource(file.getName());
+    }
+
+    static int getFileIconResource(String name) {
+        String fileName = name.toLowerCase();
 
         if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg") || fileName.endsWith(".png") ||
                 fileName.endsWith(".gif") || fileName.endsWith(".bmp")) {
@@ -0,0 +1,57 @@
+package com.example.filemanager;
+
+import java.io.File;
+
+/**
+ * File system helpers shared by the local browser, the local storage provider and the trash.
+ */
+public final class FileUtils {
+
+    private FileUtils() {
+    }
+
+    /** Deletes a file or a whole directory tree. Returns whether the top-level entry is gone. */
+    public static boolean deleteRecursive(File fileOrDirectory) {
+        PerfMetrics.beginSection("delete");
+        long deleteStart = System.nanoTime();
+        int[] deletedCount = new int[1];
+        try {
+            return deleteTree(fileOrDirectory, deletedCount);
+        } finally {
+            PerfMetrics.DELETE.recordSince(deleteStart);
+            PerfMetrics.DELETE_ENTRIES.record(deletedCount[0]);
+            PerfMetrics.endSection();
+        }
+    }
+
+    /** Total size in bytes of a file or of every file below a directory. */
+    public static long sizeOf(File fileOrDirectory) {
+        if (!fileOrDirectory.isDirectory()) {
+            return fileOrDirectory.length();
+        }
+        long size = 0;
+        File[] children = fileOrDirectory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += sizeOf(child);
+            }
+        }
+        return size;
+    }
+
+    private static boolean deleteTree(File fileOrDirectory, int[] deletedCount) {
+        if (fileOrDirectory.isDirectory()) {
+            File[] children = fileOrDirectory.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    deleteTree(child, deletedCount);
+                }
+            }
+        }
+        boolean deleted = fileOrDirectory.delete();
+        if (deleted) {
+            deletedCount[0]++;
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.filemanager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-only view of a text file of any size. The file is accessed through small memory-mapped
+ * windows and only a sparse line index is kept on the heap: a checkpoint at every
+ * {@link #INDEX_INTERVAL}th line, and at the first line start after {@link #INDEX_MAX_BYTES}
+ * without one. A line is located by jumping to the nearest checkpoint and scanning forward, so
+ * memory use does not depend on the file size and no lookup scans more than INDEX_MAX_BYTES,
+ * however long the lines are.
+ */
+public class LargeTextFile implements Closeable {
+
+    static final int INDEX_INTERVAL = 1024;
+    static final int INDEX_MAX_BYTES = 64 * 1024;
+    static final int MAX_LINE_BYTES = 4096;
+    private static final int WINDOW_SIZE = 16 * 1024 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final long length;
+
+    // Line checkpointLines[i] starts at byte checkpoints[i]; both grow in ascending order
+    private long[] checkpointLines = new long[64];
+    private long[] checkpoints = new long[64];
+    private int checkpointCount;
+    private volatile long indexedLines;
+    private volatile boolean indexComplete;
+
+    private final Window readWindow;
+    private long cursorLine = -1;
+    private long cursorOffset;
+
+    public LargeTextFile(File file) throws IOException {
+        input = new FileInputStream(file);
+        channel = input.getChannel();
+        length = channel.size();
+        readWindow = new Window();
+        checkpointLines[0] = 0;
+        checkpoints[0] = 0;
+        checkpointCount = 1;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /** Lines indexed so far; grows while {@link #buildIndex} runs. */
+    public long getLineCount() {
+        return indexedLines;
+    }
+
+    public boolean isIndexComplete() {
+        return indexComplete;
+    }
+
+    public long getIndexedBytes() {
+        synchronized (this) {
+            return indexComplete ? length : checkpoints[checkpointCount - 1];
+        }
+    }
+
+    /**
+     * Scans the whole file once to record line checkpoints. Meant to run on a background
+     * thread; lines become readable as soon as their checkpoint has been recorded.
+     */
+    public void buildIndex(AtomicBoolean cancelled) throws IOException {
+        long lines = 0;
+        long lineStart = 0;
+        long lastCheckpoint = 0;
+
+        for (long windowStart = 0; windowStart < length; windowStart += WINDOW_SIZE) {
+            if (cancelled.get()) {
+                return;
+            }
+
+            int size = (int) Math.min(WINDOW_SIZE, length - windowStart);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+            for (int i = 0; i < size; i++) {
+                if (buffer.get(i) != '\n') {
+                    continue;
+                }
+
+                lines++;
+                lineStart = windowStart + i + 1;
+                if (lines % INDEX_INTERVAL == 0 || lineStart - lastCheckpoint >= INDEX_MAX_BYTES) {
+                    addCheckpoint(lines, lineStart);
+                    lastCheckpoint = lineStart;
+                    // Publish progress once per checkpoint rather than on every line
+                    indexedLines = lines;
+                }
+            }
+        }
+
+        // A trailing line without a newline still counts
+        if (lineStart < length) {
+            lines++;
+        }
+        indexedLines = lines;
+        indexComplete = true;
+    }
+
+    /** Returns the line without its terminator, truncated to MAX_LINE_BYTES, or null if not indexed yet. */
+    public synchronized String readLine(long lineNumber) throws IOException {
+        if (lineNumber < 0 || lineNumber >= indexedLines) {
+            return null;
+        }
+
+        long offset = lineStartOffset(lineNumber, readWindow);
+        int size = 0;
+        byte[] buffer = new byte[Math.min(MAX_LINE_BYTES, (int) Math.min(Integer.MAX_VALUE, length - offset))];
+        long position = offset;
+        while (position < length && size < buffer.length) {
+            byte b = readWindow.get(position);
+            if (b == '\n') break;
+            buffer[size++] = b;
+            position++;
+        }
+        if (size > 0 && buffer[size - 1] == '\r') {
+            size--;
+        }
+        return new String(buffer, 0, size, UTF_8);
+    }
+
+    /**
+     * Finds the first line at or after fromLine containing the query, ignoring ASCII case.
+     * Returns -1 if there is no match or the search was cancelled.
+     */
+    public long findNext(String query, long fromLine, AtomicBoolean cancelled) throws IOException {
+        byte[] pattern = query.getBytes(UTF_8);
+        if (pattern.length == 0 || fromLine < 0) {
+            return -1;
+        }
+        // Fold the query exactly like the file's bytes; full Unicode lowercasing would turn
+        // "É" into "é", which never matches an "É" in the file
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = toLower(pattern[i]);
+        }
+
+        Window window = new Window();
+        long line = fromLine;
+        long position;
+        synchronized (this) {
+            if (fromLine >= indexedLines) {
+                return -1;
+            }
+            position = lineStartOffset(fromLine, window);
+        }
+
+        for (; position < length; position++) {
+            byte b = window.get(position);
+            if (b == '\n') {
+                line++;
+                if ((line & 0x3FF) == 0 && cancelled.get()) {
+                    return -1;
+                }
+                continue;
+            }
+            if (toLower(b) == pattern[0] && matchesAt(window, position, pattern)) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private boolean matchesAt(Window window, long position, byte[] pattern) throws IOException {
+        if (position + pattern.length > length) {
+            return false;
+        }
+        for (int i = 1; i < pattern.length; i++) {
+            if (toLower(window.get(position + i)) != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte toLower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    synchronized int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    private synchronized void addCheckpoint(long line, long offset) {
+        if (checkpointCount == checkpoints.length) {
+            checkpointLines = Arrays.copyOf(checkpointLines, checkpointLines.length * 2);
+            checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+        }
+        checkpointLines[checkpointCount] = line;
+        checkpoints[checkpointCount++] = offset;
+    }
+
+    // Caller must hold the lock, and the line must be indexed
+    private long lineStartOffset(long lineNumber, Window window) throws IOException {
+        // The last checkpoint at or before the line
+        int checkpoint = Arrays.binarySearch(checkpointLines, 0, checkpointCount, lineNumber);
+        if (checkpoint < 0) {
+            checkpoint = -checkpoint - 2;
+        }
+
+        long offset;
+        long line;
+
+        // Sequential reads (scrolling) continue from the previous line instead of the checkpoint
+        long checkpointLine = checkpointLines[checkpoint];
+        if (window == readWindow && cursorLine >= checkpointLine && cursorLine <= lineNumber) {
+            offset = cursorOffset;
+            line = cursorLine;
+        } else {
+            offset = checkpoints[checkpoint];
+            line = checkpointLine;
+        }
+
+        while (line < lineNumber && offset < length) {
+            if (window.get(offset++) == '\n') {
+                line++;
+            }
+        }
+
+        if (window == readWindow) {
+            cursorLine = line;
+            cursorOffset = offset;
+        }
+        return offset;
+    }
+
+    // A sliding read-only mapping of part of the file
+    private class Window {
+        private MappedByteBuffer buffer;
+        private long start = -1;
+        private int size;
+
+        byte get(long position) throws IOException {
+            if (position < start || position >= start + size) {
+                start = position - (position % WINDOW_SIZE);
+                size = (int) Math.min(WINDOW_SIZE, length - start);
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+            return buffer.get((int) (position - start));
+        }
+    }
+}
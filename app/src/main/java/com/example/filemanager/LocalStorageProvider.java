@@ -0,0 +1,104 @@
+package com.example.filemanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link StorageProvider} backed by java.io.File, rooted at a local directory.
+ */
+public class LocalStorageProvider implements StorageProvider {
+
+    private final File rootDirectory;
+
+    public LocalStorageProvider(File rootDirectory) {
+        this.rootDirectory = rootDirectory;
+    }
+
+    @Override
+    public String getRootPath() {
+        return "/";
+    }
+
+    public File toFile(String path) {
+        path = StorageEntry.normalize(path);
+        return path.equals("/") ? rootDirectory : new File(rootDirectory, path.substring(1));
+    }
+
+    @Override
+    public List<StorageEntry> list(String path) throws IOException {
+        File directory = toFile(path);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list " + path);
+        }
+
+        List<StorageEntry> entries = new ArrayList<>(files.length);
+        for (File file : files) {
+            entries.add(toEntry(StorageEntry.childOf(path, file.getName()), file));
+        }
+        return entries;
+    }
+
+    @Override
+    public StorageEntry stat(String path) throws IOException {
+        File file = toFile(path);
+        if (!file.exists()) {
+            throw new FileNotFoundException(path);
+        }
+        return toEntry(StorageEntry.normalize(path), file);
+    }
+
+    @Override
+    public List<StorageEntry> statAll(List<String> paths) throws IOException {
+        List<StorageEntry> entries = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            File file = toFile(path);
+            entries.add(file.exists() ? toEntry(StorageEntry.normalize(path), file) : null);
+        }
+        return entries;
+    }
+
+    @Override
+    public InputStream openRead(String path) throws IOException {
+        return new FileInputStream(toFile(path));
+    }
+
+    @Override
+    public OutputStream openWrite(String path) throws IOException {
+        return new FileOutputStream(toFile(path));
+    }
+
+    @Override
+    public void rename(String fromPath, String toPath) throws IOException {
+        File target = toFile(toPath);
+        if (target.exists()) {
+            throw new IOException("A file with that name already exists");
+        }
+        if (!toFile(fromPath).renameTo(target)) {
+            throw new IOException("Failed to rename " + fromPath);
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        if (!FileUtils.deleteRecursive(toFile(path))) {
+            throw new IOException("Failed to delete " + path);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static StorageEntry toEntry(String path, File file) {
+        boolean directory = file.isDirectory();
+        return new StorageEntry(path, directory, directory ? 0 : file.length(), file.lastModified());
+    }
+}
@@ -5,19 +5,26 @@ import android.Manifest;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
+import android.graphics.Typeface;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 import android.provider.Settings;
 import android.text.InputType;
+import android.util.Log;
 import android.view.ContextMenu;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -25,34 +32,91 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_PERMISSIONS = 1;
     private static final int REQUEST_MANAGE_ALL_FILES = 2;
+    private static final String TAG = "MainActivity";
+    private static final String SNAPSHOT_FILE_NAME = "last_directory.snapshot";
+    private static final String PREF_USE_TRASH = "use_trash";
+    private static final String TRANSFER_DIRECTORY_NAME = "transfers";
+
+    // A snapshot still being written by an activity that was replaced; the new one starts from it
+    // instead of from a file that is not there yet
+    private static final AtomicReference<DirectorySnapshot> pendingSnapshot = new AtomicReference<>();
+    // Expired trash is swept once per process rather than on every activity creation
+    private static boolean trashPurgedThisProcess;
 
     private ListView listView;
     private TextView currentPathTextView;
     private FileAdapter fileAdapter;
     private File currentDirectory;
-    private List<File> fileList;
+    private long currentDirectoryModified;
+    private List<File> fileList; // Entries currently shown, narrowed by the filter
+    private List<File> allFiles; // Full listing of the current directory
     private File selectedFile; // For operations like copy, move
     private boolean isMoving = false;
 
+    // Rooted at "/" so provider paths are plain absolute paths
+    private final LocalStorageProvider localProvider = new LocalStorageProvider(new File("/"));
+
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final DirectoryFilter directoryFilter = new DirectoryFilter();
+    private MenuItem filterMenuItem;
+    private String filterQuery = "";
+
+    // Copies and moves run one at a time, each backed by a journal so it can be resumed. The
+    // manager outlives this activity, so a recreated activity picks up the running transfer
+    private final TransferManager transferManager = TransferManager.getInstance();
+    private AlertDialog transferDialog;
+    private final TransferManager.Listener transferListener = new TransferManager.Listener() {
+        @Override
+        public void onTransferProgress(TransferManager.Transfer transfer) {
+            showTransferProgress(transfer);
+        }
+
+        @Override
+        public void onTransferFinished(TransferManager.Transfer transfer) {
+            finishTransfer(transfer);
+        }
+    };
+
+    private TrashManager trashManager;
+    // Trash purges run at background priority so they never compete with the UI
+    private final ExecutorService trashExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "trash-purge");
+        }
+    });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -65,6 +129,7 @@ public class MainActivity extends AppCompatActivity {
         currentPathTextView = findViewById(R.id.current_path);
 
         registerForContextMenu(listView);
+        transferManager.setListener(transferListener);
 
         // Check and request permissions
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
@@ -94,6 +159,28 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onStop() {
+        super.onStop();
+        saveSnapshot();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Let a pending snapshot write finish, but accept no new work
+        backgroundExecutor.shutdown();
+        trashExecutor.shutdown();
+        // A running transfer keeps going and reattaches to the next instance of this activity;
+        // if the process dies it is offered for resuming later
+        transferManager.removeListener(transferListener);
+        if (transferDialog != null) {
+            transferDialog.dismiss();
+            transferDialog = null;
+        }
+        directoryFilter.shutdown();
+    }
+
     private void checkStoragePermission() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.WRITE_EXTERNAL_STORAGE)
                 != PackageManager.PERMISSION_GRANTED) {
@@ -134,55 +221,290 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initFileExplorer() {
-        currentDirectory = Environment.getExternalStorageDirectory();
+        File rootDirectory = Environment.getExternalStorageDirectory();
+        trashManager = createTrashManager();
+        if (!trashPurgedThisProcess) {
+            trashPurgedThisProcess = true;
+            purgeTrash();
+        }
+        checkUnfinishedTransfers();
+
+        // Render the last visited directory straight from its snapshot, then revalidate it
+        DirectorySnapshot snapshot = pendingSnapshot.get();
+        if (snapshot == null) {
+            snapshot = DirectorySnapshot.read(getSnapshotFile());
+        }
+        if (snapshot != null && isWithinRoot(new File(snapshot.getDirectoryPath()), rootDirectory)) {
+            currentDirectory = new File(snapshot.getDirectoryPath());
+            currentDirectoryModified = snapshot.getDirectoryModified();
+            currentPathTextView.setText(currentDirectory.getAbsolutePath());
+            showFileList(snapshot.toFileList(), snapshot.toEntries(), snapshot.toItemCounts());
+            listView.setSelectionFromTop(snapshot.getScrollPosition(), snapshot.getScrollOffset());
+            revalidateDirectory();
+            return;
+        }
+
+        currentDirectory = rootDirectory;
         loadFileList();
     }
 
-    private void loadFileList() {
-        fileList = new ArrayList<>();
+    private boolean isWithinRoot(File directory, File rootDirectory) {
+        String rootPath = rootDirectory.getAbsolutePath();
+        String path = directory.getAbsolutePath();
+        return path.equals(rootPath) || path.startsWith(rootPath + File.separator);
+    }
 
+    private void loadFileList() {
         currentPathTextView.setText(currentDirectory.getAbsolutePath());
 
         if (currentDirectory.exists() && currentDirectory.canRead()) {
-            File[] files = currentDirectory.listFiles();
+            long directoryModified = currentDirectory.lastModified();
+            Listing listing = scanDirectory(currentDirectory);
+
+            if (listing != null) {
+                currentDirectoryModified = directoryModified;
+                showFileList(listing.files, listing.entries, new HashMap<String, Integer>());
+            } else {
+                Toast.makeText(this, "Unable to access this directory", Toast.LENGTH_SHORT).show();
+            }
+        } else {
+            Toast.makeText(this, "Permission denied to access this directory", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // A sorted directory listing together with the metadata read while listing it
+    private static class Listing {
+        final List<File> files;
+        final Map<String, StorageEntry> entries;
+
+        Listing(List<File> files, Map<String, StorageEntry> entries) {
+            this.files = files;
+            this.entries = entries;
+        }
+    }
 
-            if (files != null) {
-                fileList.clear();
+    // Lists and sorts a directory. Safe to call off the main thread.
+    private Listing scanDirectory(File directory) {
+        PerfMetrics.beginSection("scan");
+        long scanStart = System.nanoTime();
+        List<StorageEntry> entries;
+        try {
+            entries = localProvider.list(directory.getAbsolutePath());
+        } catch (IOException e) {
+            return null;
+        } finally {
+            PerfMetrics.SCAN.recordSince(scanStart);
+            PerfMetrics.endSection();
+        }
+        PerfMetrics.SCAN_ENTRIES.record(entries.size());
 
-                // Add parent directory if not in root
-                if (!currentDirectory.getAbsolutePath().equals(Environment.getExternalStorageDirectory().getAbsolutePath())) {
-                    fileList.add(currentDirectory.getParentFile());
+        // Sort: folders first, then files alphabetically. The listing already carries each
+        // entry's type, so sorting costs no further stats
+        PerfMetrics.beginSection("sort");
+        long sortStart = System.nanoTime();
+        Collections.sort(entries, new Comparator<StorageEntry>() {
+            @Override
+            public int compare(StorageEntry entry1, StorageEntry entry2) {
+                if (entry1.isDirectory() && !entry2.isDirectory()) {
+                    return -1;
+                } else if (!entry1.isDirectory() && entry2.isDirectory()) {
+                    return 1;
+                } else {
+                    return entry1.getName().compareToIgnoreCase(entry2.getName());
                 }
+            }
+        });
+        PerfMetrics.SORT.recordSince(sortStart);
+        PerfMetrics.endSection();
 
-                // Add all files and directories
-                fileList.addAll(Arrays.asList(files));
+        List<File> files = new ArrayList<>(entries.size() + 1);
+        Map<String, StorageEntry> metadata = new HashMap<>(entries.size() * 2);
 
-                // Sort: folders first, then files alphabetically
-                Collections.sort(fileList, new Comparator<File>() {
+        // Add parent directory if not in root
+        if (!directory.getAbsolutePath().equals(Environment.getExternalStorageDirectory().getAbsolutePath())) {
+            files.add(directory.getParentFile());
+        }
+
+        // Add all files and directories; the trash is only reachable through its own dialog
+        for (StorageEntry entry : entries) {
+            File file = localProvider.toFile(entry.getPath());
+            if (trashManager == null || !trashManager.isTrashDirectory(file)) {
+                files.add(file);
+                metadata.put(file.getAbsolutePath(), entry);
+            }
+        }
+
+        return new Listing(files, metadata);
+    }
+
+    private void showFileList(List<File> files, Map<String, StorageEntry> entries, Map<String, Integer> itemCounts) {
+        allFiles = files;
+        fileList = new ArrayList<>(files);
+        fileAdapter = new FileAdapter(this, fileList, entries, itemCounts);
+        listView.setAdapter(fileAdapter);
+
+        // The parent entry stays out of filter results
+        List<File> filterSource = new ArrayList<>(files);
+        filterSource.remove(currentDirectory.getParentFile());
+        directoryFilter.setSource(filterSource);
+        if (!filterQuery.isEmpty()) {
+            applyFilter(filterQuery);
+        }
+    }
+
+    private void applyFilter(String query) {
+        filterQuery = query;
+        if (allFiles == null) {
+            return;
+        }
+
+        if (query.isEmpty()) {
+            fileList.clear();
+            fileList.addAll(allFiles);
+            fileAdapter.notifyDataSetChanged();
+            return;
+        }
+
+        final List<File> source = allFiles;
+        directoryFilter.filter(query, new DirectoryFilter.Callback() {
+            @Override
+            public void onFilterResult(final String matchedQuery, final List<File> matches) {
+                mainHandler.post(new Runnable() {
                     @Override
-                    public int compare(File file1, File file2) {
-                        if (file1.isDirectory() && !file2.isDirectory()) {
-                            return -1;
-                        } else if (!file1.isDirectory() && file2.isDirectory()) {
-                            return 1;
-                        } else {
-                            return file1.getName().compareToIgnoreCase(file2.getName());
+                    public void run() {
+                        // Drop results for a query or listing that has since been replaced
+                        if (isFinishing() || isDestroyed() || source != allFiles || !matchedQuery.equals(filterQuery)) {
+                            return;
                         }
+                        fileList.clear();
+                        fileList.addAll(matches);
+                        fileAdapter.notifyDataSetChanged();
                     }
                 });
+            }
+        });
+    }
 
-                fileAdapter = new FileAdapter(this, fileList);
-                listView.setAdapter(fileAdapter);
-            } else {
-                Toast.makeText(this, "Unable to access this directory", Toast.LENGTH_SHORT).show();
+    // Rescans the current directory in the background if it changed since its listing was
+    // taken. An unchanged listing only has its metadata loaded, in one batch.
+    private void revalidateDirectory() {
+        final File directory = currentDirectory;
+        final long knownModified = currentDirectoryModified;
+        final List<File> shownFiles = allFiles;
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long directoryModified = directory.lastModified();
+                if (directory.isDirectory() && directoryModified == knownModified) {
+                    loadMetadata(directory, shownFiles);
+                    return;
+                }
+
+                final Listing listing = directory.canRead() ? scanDirectory(directory) : null;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isFinishing() || isDestroyed() || !directory.equals(currentDirectory)) {
+                            return;
+                        }
+
+                        if (listing == null) {
+                            // The remembered directory is gone, fall back to the storage root
+                            currentDirectory = Environment.getExternalStorageDirectory();
+                            loadFileList();
+                            return;
+                        }
+
+                        int position = listView.getFirstVisiblePosition();
+                        View firstChild = listView.getChildAt(0);
+                        int offset = firstChild != null ? firstChild.getTop() : 0;
+
+                        currentDirectoryModified = directoryModified;
+                        showFileList(listing.files, listing.entries, new HashMap<String, Integer>());
+                        listView.setSelectionFromTop(position, offset);
+                    }
+                });
+            }
+        });
+    }
+
+    // Stats every shown entry of a listing restored from its snapshot and counts the items of its
+    // directories. Runs on the background executor.
+    private void loadMetadata(File directory, final List<File> files) {
+        File parent = directory.getParentFile();
+        List<String> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            if (!file.equals(parent)) {
+                paths.add(file.getAbsolutePath());
+            }
+        }
+
+        final List<StorageEntry> entries;
+        try {
+            entries = localProvider.statAll(paths);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to load metadata for " + directory, e);
+            return;
+        }
+
+        final Map<String, Integer> itemCounts = new HashMap<>();
+        for (StorageEntry entry : entries) {
+            if (entry != null && entry.isDirectory()) {
+                String[] contents = new File(entry.getPath()).list();
+                itemCounts.put(entry.getPath(), contents != null ? contents.length : 0);
             }
-        } else {
-            Toast.makeText(this, "Permission denied to access this directory", Toast.LENGTH_SHORT).show();
         }
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing() || isDestroyed() || files != allFiles) {
+                    return;
+                }
+                fileAdapter.putEntries(entries, itemCounts);
+            }
+        });
+    }
+
+    private File getSnapshotFile() {
+        return new File(getFilesDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    private void saveSnapshot() {
+        if (currentDirectory == null || allFiles == null) {
+            return;
+        }
+
+        View firstChild = listView.getChildAt(0);
+        final DirectorySnapshot snapshot = DirectorySnapshot.fromFileList(currentDirectory,
+                currentDirectoryModified, allFiles, fileAdapter.getEntries(), fileAdapter.getItemCounts(),
+                listView.getFirstVisiblePosition(), firstChild != null ? firstChild.getTop() : 0);
+        final File snapshotFile = getSnapshotFile();
+        pendingSnapshot.set(snapshot);
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    snapshot.write(snapshotFile);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to save directory snapshot", e);
+                } finally {
+                    // Unless a newer snapshot was handed over meanwhile
+                    pendingSnapshot.compareAndSet(snapshot, null);
+                }
+            }
+        });
     }
 
     private void navigateToDirectory(File directory) {
         if (directory.isDirectory() && directory.canRead()) {
+            // A filter only applies to the directory it was typed in
+            filterQuery = "";
+            if (filterMenuItem != null && filterMenuItem.isActionViewExpanded()) {
+                filterMenuItem.collapseActionView();
+            }
             currentDirectory = directory;
             loadFileList();
         } else {
@@ -191,6 +513,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void openFile(File file) {
+        // Text and log files open in the built-in viewer, which copes with files of any size
+        if (TextViewerActivity.canView(file)) {
+            Intent intent = new Intent(this, TextViewerActivity.class);
+            intent.putExtra(TextViewerActivity.EXTRA_PATH, file.getAbsolutePath());
+            startActivity(intent);
+            return;
+        }
+
         // Get MIME type
         String type = getFileMimeType(file);
 
@@ -210,7 +540,7 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private String getFileMimeType(File file) {
+    static String getFileMimeType(File file) {
         String name = file.getName();
         String extension = name.substring(name.lastIndexOf(".") + 1).toLowerCase();
 
@@ -285,6 +615,29 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+
+        filterMenuItem = menu.findItem(R.id.action_filter);
+        SearchView searchView = (SearchView) filterMenuItem.getActionView();
+        searchView.setQueryHint("Filter");
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (!newText.equals(filterQuery)) {
+                    applyFilter(newText);
+                }
+                return true;
+            }
+        });
+
+        // Performance stats are only exposed in debuggable builds
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        menu.findItem(R.id.action_perf_stats).setVisible(debuggable);
+        menu.findItem(R.id.action_use_trash).setChecked(isTrashEnabled());
         return true;
     }
 
@@ -316,11 +669,134 @@ public class MainActivity extends AppCompatActivity {
                 loadFileList();
                 return true;
 
+            case R.id.action_trash:
+                showTrash();
+                return true;
+
+            case R.id.action_use_trash:
+                item.setChecked(!item.isChecked());
+                getPreferences(MODE_PRIVATE).edit().putBoolean(PREF_USE_TRASH, item.isChecked()).apply();
+                return true;
+
+            case R.id.action_connect:
+                showConnectDialog();
+                return true;
+
+            case R.id.action_perf_stats:
+                showPerfStats();
+                return true;
+
             default:
                 return super.onOptionsItemSelected(item);
         }
     }
 
+    private void showConnectDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Connect to Server");
+
+        LinearLayout layout = new LinearLayout(this);
+        layout.setOrientation(LinearLayout.VERTICAL);
+
+        final EditText urlInput = new EditText(this);
+        urlInput.setHint("sftp://host/path or https://host/webdav/");
+        urlInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        layout.addView(urlInput);
+
+        final EditText usernameInput = new EditText(this);
+        usernameInput.setHint("Username");
+        usernameInput.setInputType(InputType.TYPE_CLASS_TEXT);
+        layout.addView(usernameInput);
+
+        final EditText passwordInput = new EditText(this);
+        passwordInput.setHint("Password");
+        passwordInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_PASSWORD);
+        layout.addView(passwordInput);
+
+        builder.setView(layout);
+
+        builder.setPositiveButton("Connect", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                String url = urlInput.getText().toString().trim();
+                if (!url.isEmpty()) {
+                    Intent intent = new Intent(MainActivity.this, RemoteBrowserActivity.class);
+                    intent.putExtra(RemoteBrowserActivity.EXTRA_URL, url);
+                    intent.putExtra(RemoteBrowserActivity.EXTRA_USERNAME, usernameInput.getText().toString().trim());
+                    intent.putExtra(RemoteBrowserActivity.EXTRA_PASSWORD, passwordInput.getText().toString());
+                    startActivity(intent);
+                } else {
+                    Toast.makeText(MainActivity.this, "Server address cannot be empty", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.cancel();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void showPerfStats() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Performance Stats");
+
+        final TextView statsView = new TextView(this);
+        statsView.setTypeface(Typeface.MONOSPACE);
+        statsView.setTextSize(11);
+        statsView.setPadding(24, 24, 24, 24);
+        statsView.setHorizontallyScrolling(true);
+        statsView.setText(PerfMetrics.toSummary());
+        builder.setView(statsView);
+
+        builder.setPositiveButton("Export JSON", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                exportPerfStats();
+            }
+        });
+
+        builder.setNeutralButton("Reset", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                PerfMetrics.reset();
+                Toast.makeText(MainActivity.this, "Stats reset", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        builder.setNegativeButton("Close", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void exportPerfStats() {
+        File exportFile = new File(getExternalFilesDir(null), "perf-metrics-" + System.currentTimeMillis() + ".json");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(exportFile);
+            out.write(PerfMetrics.toJson().getBytes("UTF-8"));
+            Toast.makeText(this, "Exported to " + exportFile.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            Toast.makeText(this, "Error exporting stats: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
     private void createNewFolder() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Create New Folder");
@@ -452,18 +928,24 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void deleteFile(final File file) {
+        final boolean toTrash = isTrashEnabled() && trashManager != null
+                && trashManager.getVolumeRoot(file) != null;
+
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle("Delete");
-        builder.setMessage("Are you sure you want to delete " + file.getName() + "?");
+        if (toTrash) {
+            builder.setMessage("Move " + file.getName() + " to the trash?");
+        } else {
+            builder.setMessage("Are you sure you want to delete " + file.getName() + "?");
+        }
 
         builder.setPositiveButton("Yes", new DialogInterface.OnClickListener() {
             @Override
             public void onClick(DialogInterface dialog, int which) {
-                if (deleteRecursive(file)) {
-                    Toast.makeText(MainActivity.this, "Deleted successfully", Toast.LENGTH_SHORT).show();
-                    loadFileList();
+                if (toTrash) {
+                    moveToTrash(file);
                 } else {
-                    Toast.makeText(MainActivity.this, "Failed to delete", Toast.LENGTH_SHORT).show();
+                    deletePermanently(file);
                 }
             }
         });
@@ -478,16 +960,211 @@ public class MainActivity extends AppCompatActivity {
         builder.show();
     }
 
-    private boolean deleteRecursive(File fileOrDirectory) {
-        if (fileOrDirectory.isDirectory()) {
-            File[] children = fileOrDirectory.listFiles();
-            if (children != null) {
-                for (File child : children) {
-                    deleteRecursive(child);
+    private void deletePermanently(File file) {
+        if (FileUtils.deleteRecursive(file)) {
+            Toast.makeText(MainActivity.this, "Deleted successfully", Toast.LENGTH_SHORT).show();
+            loadFileList();
+        } else {
+            Toast.makeText(MainActivity.this, "Failed to delete", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void moveToTrash(final File file) {
+        try {
+            trashManager.moveToTrash(file);
+        } catch (IOException e) {
+            // Some folders are separate mounts, so the rename can fail even on the same volume
+            AlertDialog.Builder builder = new AlertDialog.Builder(this);
+            builder.setTitle("Delete");
+            builder.setMessage("Could not move " + file.getName() + " to the trash ("
+                    + e.getMessage() + "). Delete it permanently?");
+
+            builder.setPositiveButton("Delete", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    deletePermanently(file);
+                }
+            });
+
+            builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    dialog.dismiss();
                 }
+            });
+
+            builder.show();
+            return;
+        }
+
+        Toast.makeText(this, "Moved to trash", Toast.LENGTH_SHORT).show();
+        loadFileList();
+        purgeTrash();
+    }
+
+    private boolean isTrashEnabled() {
+        return getPreferences(MODE_PRIVATE).getBoolean(PREF_USE_TRASH, false);
+    }
+
+    private TrashManager createTrashManager() {
+        List<File> volumeRoots = new ArrayList<>();
+        volumeRoots.add(Environment.getExternalStorageDirectory());
+
+        // App directories look like <volume>/Android/data/<package>/files, one per mounted volume
+        for (File appDirectory : ContextCompat.getExternalFilesDirs(this, null)) {
+            if (appDirectory == null) {
+                continue;
+            }
+            String path = appDirectory.getAbsolutePath();
+            int index = path.indexOf("/Android/data/");
+            if (index > 0) {
+                volumeRoots.add(new File(path.substring(0, index)));
+            }
+        }
+        return new TrashManager(volumeRoots);
+    }
+
+    private void purgeTrash() {
+        final TrashManager manager = trashManager;
+        trashExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                manager.purge(System.currentTimeMillis());
             }
+        });
+    }
+
+    private void showTrash() {
+        if (trashManager == null) {
+            return;
         }
-        return fileOrDirectory.delete();
+        final TrashManager manager = trashManager;
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<TrashManager.Item> items = manager.listItems();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing() && !isDestroyed()) {
+                            showTrashItems(items);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void showTrashItems(final List<TrashManager.Item> items) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Trash");
+
+        if (items.isEmpty()) {
+            builder.setMessage("The trash is empty");
+        } else {
+            String[] labels = new String[items.size()];
+            for (int i = 0; i < labels.length; i++) {
+                TrashManager.Item item = items.get(i);
+                labels[i] = item.getName() + "\n" + FileAdapter.formatDate(item.getDeletedAt());
+            }
+            builder.setItems(labels, new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    showTrashItem(items.get(which));
+                }
+            });
+
+            builder.setNeutralButton("Empty Trash", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    confirmEmptyTrash();
+                }
+            });
+        }
+
+        builder.setNegativeButton("Close", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void showTrashItem(final TrashManager.Item item) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(item.getName());
+
+        String message = "Deleted from " + item.getOriginalPath() + "\non " + FileAdapter.formatDate(item.getDeletedAt());
+        if (item.getSize() >= 0) {
+            message += "\n" + FileAdapter.formatFileSize(item.getSize());
+        }
+        builder.setMessage(message);
+
+        builder.setPositiveButton("Restore", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                try {
+                    trashManager.restore(item);
+                    Toast.makeText(MainActivity.this, "Restored successfully", Toast.LENGTH_SHORT).show();
+                    loadFileList();
+                } catch (IOException e) {
+                    Toast.makeText(MainActivity.this, "Failed to restore: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+
+        builder.setNeutralButton("Delete Permanently", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                final TrashManager manager = trashManager;
+                trashExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        manager.delete(item);
+                    }
+                });
+            }
+        });
+
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void confirmEmptyTrash() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Empty Trash");
+        builder.setMessage("Permanently delete everything in the trash?");
+
+        builder.setPositiveButton("Yes", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                final TrashManager manager = trashManager;
+                trashExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        manager.empty();
+                    }
+                });
+                Toast.makeText(MainActivity.this, "Emptying trash", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        builder.setNegativeButton("No", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+
+        builder.show();
     }
 
     private void copyFile(File src, File destDir) {
@@ -526,44 +1203,7 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void executeCopy(File src, File dest) {
-        try {
-            if (src.isDirectory()) {
-                // Create destination directory
-                if (!dest.exists()) {
-                    dest.mkdirs();
-                }
-
-                // Copy all contents
-                String[] files = src.list();
-                if (files != null) {
-                    for (String file : files) {
-                        File srcFile = new File(src, file);
-                        File destFile = new File(dest, file);
-                        executeCopy(srcFile, destFile);
-                    }
-                }
-            } else {
-                // Copy the file
-                FileChannel sourceChannel = null;
-                FileChannel destChannel = null;
-
-                try {
-                    sourceChannel = new FileInputStream(src).getChannel();
-                    destChannel = new FileOutputStream(dest).getChannel();
-                    destChannel.transferFrom(sourceChannel, 0, sourceChannel.size());
-
-                } finally {
-                    if (sourceChannel != null) sourceChannel.close();
-                    if (destChannel != null) destChannel.close();
-                }
-            }
-
-            Toast.makeText(this, "Copied successfully", Toast.LENGTH_SHORT).show();
-            loadFileList();
-
-        } catch (IOException e) {
-            Toast.makeText(this, "Error copying: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        startTransfer(TransferJournal.TYPE_COPY, src, dest);
     }
 
     private void moveFile(File src, File destDir) {
@@ -610,18 +1250,139 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // If direct move fails, try copy and delete
-        try {
-            copyFile(src, dest.getParentFile());
-            if (deleteRecursive(src)) {
-                Toast.makeText(this, "Moved successfully", Toast.LENGTH_SHORT).show();
-                loadFileList();
-            } else {
-                Toast.makeText(this, "File copied but original could not be deleted", Toast.LENGTH_SHORT).show();
+        // Different volume: copy everything, then delete the sources once the copy is complete
+        startTransfer(TransferJournal.TYPE_MOVE, src, dest);
+    }
+
+    private File getTransferDirectory() {
+        return new File(getFilesDir(), TRANSFER_DIRECTORY_NAME);
+    }
+
+    private void startTransfer(int type, File src, File dest) {
+        if (!transferManager.start(type, getTransferDirectory(), src, dest)) {
+            Toast.makeText(this, "Another transfer is in progress", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void resumeTransfer(TransferJob job) {
+        if (!transferManager.resume(job)) {
+            Toast.makeText(this, "Another transfer is in progress", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void showTransferProgress(final TransferManager.Transfer transfer) {
+        if (transferDialog == null) {
+            AlertDialog.Builder builder = new AlertDialog.Builder(this);
+            builder.setTitle(transfer.getType() == TransferJournal.TYPE_MOVE ? "Moving" : "Copying");
+            builder.setMessage(transfer.getName());
+            builder.setCancelable(false);
+
+            builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    transfer.cancel();
+                }
+            });
+
+            transferDialog = builder.show();
+        }
+
+        long bytesDone = transfer.getBytesDone();
+        long bytesTotal = transfer.getBytesTotal();
+        if (bytesTotal > 0) {
+            int percent = (int) (bytesDone * 100 / bytesTotal);
+            transferDialog.setMessage(transfer.getName() + "\n" + percent + "% (" + FileAdapter.formatFileSize(bytesDone)
+                    + " of " + FileAdapter.formatFileSize(bytesTotal) + ")");
+        }
+    }
+
+    private void finishTransfer(TransferManager.Transfer transfer) {
+        if (transferDialog != null) {
+            transferDialog.dismiss();
+            transferDialog = null;
+        }
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+
+        boolean move = transfer.getType() == TransferJournal.TYPE_MOVE;
+        if (transfer.getError() != null) {
+            Toast.makeText(this, (move ? "Error moving: " : "Error copying: ") + transfer.getError().getMessage(), Toast.LENGTH_SHORT).show();
+        } else if (!transfer.isFinished()) {
+            Toast.makeText(this, "Stopped, you can resume it the next time the app starts", Toast.LENGTH_LONG).show();
+        } else if (move && transfer.getJob().hasRemainingSources()) {
+            Toast.makeText(this, "File copied but original could not be deleted", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, move ? "Moved successfully" : "Copied successfully", Toast.LENGTH_SHORT).show();
+        }
+        if (currentDirectory != null) {
+            loadFileList();
+        }
+    }
+
+    private void checkUnfinishedTransfers() {
+        if (!transferManager.claimUnfinishedCheck()) {
+            return;
+        }
+        final File journalDirectory = getTransferDirectory();
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<TransferJob> jobs = TransferJob.findUnfinished(journalDirectory);
+                if (jobs.isEmpty()) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isFinishing() && !isDestroyed()) {
+                            showUnfinishedTransfer(jobs, 0);
+                        }
+                    }
+                });
             }
-        } catch (Exception e) {
-            Toast.makeText(this, "Error moving: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    private void showUnfinishedTransfer(final List<TransferJob> jobs, final int index) {
+        if (index >= jobs.size()) {
+            return;
         }
+        final TransferJob job = jobs.get(index);
+        long total = job.getTotalBytes();
+        int percent = total == 0 ? 0 : (int) (job.getCompletedBytes() * 100 / total);
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Unfinished Transfer");
+        builder.setMessage((job.getType() == TransferJournal.TYPE_MOVE ? "Moving " : "Copying ")
+                + job.getSource().getName() + " to " + job.getDestination().getParent()
+                + " stopped at " + percent + "%. Resume it?");
+        builder.setCancelable(false);
+
+        builder.setPositiveButton("Resume", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                // Any others are offered again on the next start
+                resumeTransfer(job);
+            }
+        });
+
+        builder.setNeutralButton("Discard", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                transferManager.discard(job);
+                showUnfinishedTransfer(jobs, index + 1);
+            }
+        });
+
+        builder.setNegativeButton("Later", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                showUnfinishedTransfer(jobs, index + 1);
+            }
+        });
+
+        builder.show();
     }
 
     @Override
@@ -0,0 +1,75 @@
+package com.example.filemanager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of {@link StorageEntry} metadata with a time-to-live, used by remote
+ * providers so repeated stats of recently listed paths never hit the network.
+ */
+public class MetadataCache {
+
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CachedEntry> entries;
+
+    public MetadataCache(final int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, CachedEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /** Returns the cached entry, or null if the path is not cached or has expired. */
+    public synchronized StorageEntry get(String path) {
+        CachedEntry cached = entries.get(path);
+        if (cached == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - cached.cachedAt > ttlMillis) {
+            entries.remove(path);
+            return null;
+        }
+        return cached.entry;
+    }
+
+    public synchronized void put(StorageEntry entry) {
+        entries.put(entry.getPath(), new CachedEntry(entry, System.currentTimeMillis()));
+    }
+
+    public synchronized void putAll(Iterable<StorageEntry> newEntries) {
+        long now = System.currentTimeMillis();
+        for (StorageEntry entry : newEntries) {
+            entries.put(entry.getPath(), new CachedEntry(entry, now));
+        }
+    }
+
+    /** Drops the path and, for directories, everything cached below it. */
+    public synchronized void invalidate(String path) {
+        entries.remove(path);
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static class CachedEntry {
+        final StorageEntry entry;
+        final long cachedAt;
+
+        CachedEntry(StorageEntry entry, long cachedAt) {
+            this.entry = entry;
+            this.cachedAt = cachedAt;
+        }
+    }
+}
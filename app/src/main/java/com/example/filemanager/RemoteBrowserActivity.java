@@ -0,0 +1,396 @@
+package com.example.filemanager;
+
+import android.content.Context;
+import android.content.DialogInterface;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.InputType;
+import android.view.ContextMenu;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.HttpUrl;
+
+public class RemoteBrowserActivity extends AppCompatActivity {
+
+    public static final String EXTRA_URL = "com.example.filemanager.extra.URL";
+    public static final String EXTRA_USERNAME = "com.example.filemanager.extra.USERNAME";
+    public static final String EXTRA_PASSWORD = "com.example.filemanager.extra.PASSWORD";
+
+    private ListView listView;
+    private TextView currentPathTextView;
+    private StorageProvider storageProvider;
+    private String currentPath;
+    private List<StorageEntry> entryList = new ArrayList<>();
+
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_main);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+
+        listView = findViewById(R.id.file_list_view);
+        currentPathTextView = findViewById(R.id.current_path);
+        registerForContextMenu(listView);
+
+        Uri uri = Uri.parse(getIntent().getStringExtra(EXTRA_URL));
+        storageProvider = createProvider(this, uri,
+                getIntent().getStringExtra(EXTRA_USERNAME),
+                getIntent().getStringExtra(EXTRA_PASSWORD));
+        if (storageProvider == null) {
+            Toast.makeText(this, "Unsupported server address", Toast.LENGTH_LONG).show();
+            finish();
+            return;
+        }
+
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(uri.getHost());
+        }
+
+        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                StorageEntry entry = entryList.get(position);
+
+                if (entry.isDirectory()) {
+                    currentPath = entry.getPath();
+                    loadEntries();
+                } else {
+                    openEntry(entry);
+                }
+            }
+        });
+
+        currentPath = storageProvider.getRootPath();
+        loadEntries();
+    }
+
+    // Returns null for schemes without a backend, including cleartext http and webdav
+    static StorageProvider createProvider(Context context, Uri uri, String username, String password) {
+        String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "";
+        switch (scheme) {
+            case "sftp":
+                if (uri.getHost() == null) return null;
+                String path = uri.getPath() != null && !uri.getPath().isEmpty() ? uri.getPath() : "/";
+                return new SftpStorageProvider(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 22,
+                        username, password, path, new File(context.getFilesDir(), "known_hosts"));
+
+            // Only TLS: the password goes out with every request as Basic auth
+            case "webdavs":
+            case "https":
+                HttpUrl url = HttpUrl.parse(uri.buildUpon().scheme("https").build().toString());
+                if (url == null) return null;
+                return new WebDavStorageProvider(url, username, password, context.getCacheDir());
+
+            default:
+                return null;
+        }
+    }
+
+    private void loadEntries() {
+        final String path = currentPath;
+        currentPathTextView.setText(path);
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final List<StorageEntry> entries = storageProvider.list(path);
+
+                    // Sort: folders first, then files alphabetically
+                    Collections.sort(entries, new Comparator<StorageEntry>() {
+                        @Override
+                        public int compare(StorageEntry entry1, StorageEntry entry2) {
+                            if (entry1.isDirectory() && !entry2.isDirectory()) {
+                                return -1;
+                            } else if (!entry1.isDirectory() && entry2.isDirectory()) {
+                                return 1;
+                            } else {
+                                return entry1.getName().compareToIgnoreCase(entry2.getName());
+                            }
+                        }
+                    });
+
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isFinishing() || isDestroyed() || !path.equals(currentPath)) {
+                                return;
+                            }
+                            entryList = entries;
+                            listView.setAdapter(new StorageEntryAdapter(RemoteBrowserActivity.this, entryList));
+                        }
+                    });
+                } catch (IOException e) {
+                    showError("Unable to list directory: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void openEntry(final StorageEntry entry) {
+        Toast.makeText(this, "Downloading " + entry.getName(), Toast.LENGTH_SHORT).show();
+
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File downloadDir = new File(getCacheDir(), "remote");
+                downloadDir.mkdirs();
+                final File localFile = new File(downloadDir, entry.getName());
+
+                try {
+                    InputStream in = storageProvider.openRead(entry.getPath());
+                    OutputStream out = null;
+                    try {
+                        out = new FileOutputStream(localFile);
+                        byte[] buffer = new byte[64 * 1024];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        in.close();
+                        if (out != null) out.close();
+                    }
+                } catch (IOException e) {
+                    localFile.delete();
+                    showError("Error downloading: " + e.getMessage());
+                    return;
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        viewLocalFile(localFile);
+                    }
+                });
+            }
+        });
+    }
+
+    private void viewLocalFile(File file) {
+        String type = MainActivity.getFileMimeType(file);
+
+        Intent intent = new Intent(Intent.ACTION_VIEW);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            Uri contentUri = FileProvider.getUriForFile(this, getPackageName() + ".provider", file);
+            intent.setDataAndType(contentUri, type);
+        } else {
+            intent.setDataAndType(Uri.fromFile(file), type);
+        }
+
+        try {
+            startActivity(intent);
+        } catch (Exception e) {
+            Toast.makeText(this, "No app found to open this file", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    @Override
+    public void onCreateContextMenu(ContextMenu menu, View v, ContextMenu.ContextMenuInfo menuInfo) {
+        super.onCreateContextMenu(menu, v, menuInfo);
+        AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) menuInfo;
+        StorageEntry entry = entryList.get(info.position);
+
+        menu.setHeaderTitle(entry.getName());
+        getMenuInflater().inflate(R.menu.file_context_menu, menu);
+
+        // Copy and move only work between local directories
+        menu.findItem(R.id.action_copy).setVisible(false);
+        menu.findItem(R.id.action_move).setVisible(false);
+    }
+
+    @Override
+    public boolean onContextItemSelected(MenuItem item) {
+        AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) item.getMenuInfo();
+        final StorageEntry entry = entryList.get(info.position);
+
+        switch (item.getItemId()) {
+            case R.id.action_rename:
+                renameEntry(entry);
+                return true;
+
+            case R.id.action_delete:
+                deleteEntry(entry);
+                return true;
+
+            default:
+                return super.onContextItemSelected(item);
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.remote_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.action_refresh) {
+            loadEntries();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    private void renameEntry(final StorageEntry entry) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Rename");
+
+        final EditText input = new EditText(this);
+        input.setText(entry.getName());
+        input.setInputType(InputType.TYPE_CLASS_TEXT);
+        builder.setView(input);
+
+        builder.setPositiveButton("Rename", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                final String newName = input.getText().toString().trim();
+                if (newName.isEmpty()) {
+                    Toast.makeText(RemoteBrowserActivity.this, "Name cannot be empty", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+
+                final String newPath = StorageEntry.childOf(StorageEntry.parentOf(entry.getPath()), newName);
+                runOperation(new RemoteOperation() {
+                    @Override
+                    public void run() throws IOException {
+                        storageProvider.rename(entry.getPath(), newPath);
+                    }
+                }, "Renamed successfully", "Failed to rename");
+            }
+        });
+
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.cancel();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void deleteEntry(final StorageEntry entry) {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Delete");
+        builder.setMessage("Are you sure you want to delete " + entry.getName() + "?");
+
+        builder.setPositiveButton("Yes", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                runOperation(new RemoteOperation() {
+                    @Override
+                    public void run() throws IOException {
+                        storageProvider.delete(entry.getPath());
+                    }
+                }, "Deleted successfully", "Failed to delete");
+            }
+        });
+
+        builder.setNegativeButton("No", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.dismiss();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void runOperation(final RemoteOperation operation, final String successMessage, final String failureMessage) {
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    operation.run();
+                } catch (IOException e) {
+                    showError(failureMessage + ": " + e.getMessage());
+                    return;
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(RemoteBrowserActivity.this, successMessage, Toast.LENGTH_SHORT).show();
+                        loadEntries();
+                    }
+                });
+            }
+        });
+    }
+
+    private void showError(final String message) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(RemoteBrowserActivity.this, message, Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    @Override
+    public void onBackPressed() {
+        if (storageProvider != null && !currentPath.equals(storageProvider.getRootPath())) {
+            currentPath = StorageEntry.parentOf(currentPath);
+            loadEntries();
+        } else {
+            super.onBackPressed();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (storageProvider != null) {
+            final StorageProvider provider = storageProvider;
+            backgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        provider.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            });
+        }
+        backgroundExecutor.shutdown();
+    }
+
+    private interface RemoteOperation {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.filemanager;
+
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for network backed providers. Every listing seeds a {@link MetadataCache}, and
+ * {@link #statAll} turns many stats into as few round-trips as possible: cached paths are
+ * answered locally, paths sharing a parent are resolved with a single listing of that parent,
+ * and whatever remains goes to {@link #fetchStats}, which subclasses can pipeline.
+ */
+public abstract class RemoteStorageProvider implements StorageProvider {
+
+    private static final int CACHE_MAX_ENTRIES = 20000;
+    private static final long CACHE_TTL_MILLIS = 30 * 1000;
+
+    // With this many uncached siblings, one listing of the parent is cheaper than separate stats
+    private static final int LIST_BATCH_THRESHOLD = 4;
+
+    protected final MetadataCache metadataCache = new MetadataCache(CACHE_MAX_ENTRIES, CACHE_TTL_MILLIS);
+
+    protected abstract List<StorageEntry> fetchList(String path) throws IOException;
+
+    /** Returns the entry at the path, or null if it does not exist. */
+    protected abstract StorageEntry fetchStat(String path) throws IOException;
+
+    protected abstract OutputStream fetchWrite(String path) throws IOException;
+
+    protected abstract void performRename(String fromPath, String toPath) throws IOException;
+
+    protected abstract void performDelete(String path) throws IOException;
+
+    /**
+     * Stats the given paths, one result per path with null for missing ones. The default
+     * implementation issues one request after another; subclasses should override this to
+     * keep several requests in flight.
+     */
+    protected List<StorageEntry> fetchStats(List<String> paths) throws IOException {
+        List<StorageEntry> entries = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            entries.add(fetchStat(path));
+        }
+        return entries;
+    }
+
+    @Override
+    public String getRootPath() {
+        return "/";
+    }
+
+    @Override
+    public List<StorageEntry> list(String path) throws IOException {
+        List<StorageEntry> entries = fetchList(StorageEntry.normalize(path));
+        metadataCache.putAll(entries);
+        return entries;
+    }
+
+    @Override
+    public StorageEntry stat(String path) throws IOException {
+        path = StorageEntry.normalize(path);
+        StorageEntry entry = metadataCache.get(path);
+        if (entry == null) {
+            entry = fetchStat(path);
+            if (entry == null) {
+                throw new FileNotFoundException(path);
+            }
+            metadataCache.put(entry);
+        }
+        return entry;
+    }
+
+    @Override
+    public List<StorageEntry> statAll(List<String> paths) throws IOException {
+        StorageEntry[] results = new StorageEntry[paths.size()];
+
+        // Answer what we can from the cache and group the rest by parent directory
+        Map<String, List<Integer>> missesByParent = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            String path = StorageEntry.normalize(paths.get(i));
+            results[i] = metadataCache.get(path);
+            if (results[i] == null && !path.equals("/")) {
+                String parent = StorageEntry.parentOf(path);
+                List<Integer> misses = missesByParent.get(parent);
+                if (misses == null) {
+                    misses = new ArrayList<>();
+                    missesByParent.put(parent, misses);
+                }
+                misses.add(i);
+            }
+        }
+
+        List<Integer> remaining = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> group : missesByParent.entrySet()) {
+            List<Integer> misses = group.getValue();
+            if (misses.size() < LIST_BATCH_THRESHOLD) {
+                remaining.addAll(misses);
+                continue;
+            }
+
+            Map<String, StorageEntry> children = new HashMap<>();
+            try {
+                for (StorageEntry child : list(group.getKey())) {
+                    children.put(child.getPath(), child);
+                }
+            } catch (FileNotFoundException e) {
+                // Parent is gone, so every path below it is missing
+            }
+            for (int index : misses) {
+                results[index] = children.get(StorageEntry.normalize(paths.get(index)));
+            }
+        }
+
+        // Root has no parent to list, so it always goes through a direct stat
+        for (int i = 0; i < paths.size(); i++) {
+            if (results[i] == null && StorageEntry.normalize(paths.get(i)).equals("/")) {
+                remaining.add(i);
+            }
+        }
+
+        if (!remaining.isEmpty()) {
+            List<String> remainingPaths = new ArrayList<>(remaining.size());
+            for (int index : remaining) {
+                remainingPaths.add(StorageEntry.normalize(paths.get(index)));
+            }
+            List<StorageEntry> fetched = fetchStats(remainingPaths);
+            for (int i = 0; i < remaining.size(); i++) {
+                StorageEntry entry = fetched.get(i);
+                results[remaining.get(i)] = entry;
+                if (entry != null) {
+                    metadataCache.put(entry);
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public OutputStream openWrite(String path) throws IOException {
+        final String normalizedPath = StorageEntry.normalize(path);
+        metadataCache.invalidate(normalizedPath);
+        return new FilterOutputStream(fetchWrite(normalizedPath)) {
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    metadataCache.invalidate(normalizedPath);
+                }
+            }
+        };
+    }
+
+    @Override
+    public void rename(String fromPath, String toPath) throws IOException {
+        fromPath = StorageEntry.normalize(fromPath);
+        toPath = StorageEntry.normalize(toPath);
+        try {
+            performRename(fromPath, toPath);
+        } finally {
+            metadataCache.invalidate(fromPath);
+            metadataCache.invalidate(toPath);
+        }
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        path = StorageEntry.normalize(path);
+        try {
+            performDelete(path);
+        } finally {
+            metadataCache.invalidate(path);
+        }
+    }
+}
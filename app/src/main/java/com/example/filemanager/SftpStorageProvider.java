@@ -0,0 +1,455 @@
+package com.example.filemanager;
+
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.HostKey;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpATTRS;
+import com.jcraft.jsch.SftpException;
+import com.jcraft.jsch.UserInfo;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SFTP backend on top of JSch. Listings use READDIR, which returns the attributes of each
+ * child together with its name, so a directory of any size is listed in a few round-trips
+ * without per-file stats. Reads and writes get their own channel on the shared session so a
+ * transfer never blocks browsing; reads keep several requests in flight (bulk requests).
+ *
+ * A JSch channel waits for each reply before sending the next request, so batches of stats
+ * are spread over a small pool of extra channels to keep up to {@link #STAT_CHANNELS}
+ * requests in flight.
+ */
+public class SftpStorageProvider extends RemoteStorageProvider {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 15000;
+    private static final int BULK_REQUESTS = 64;
+    static final int STAT_CHANNELS = 8;
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final String rootPath;
+    private final File knownHostsFile;
+
+    // Guards the session only, so opening a channel never waits on a listing in progress
+    private final Object sessionLock = new Object();
+    private Session session;
+    private ChannelSftp channel;
+
+    // Idle channels for batched stats, and the threads driving them
+    private final List<ChannelSftp> statChannels = new ArrayList<>();
+    private ExecutorService statExecutor;
+
+    public SftpStorageProvider(String host, int port, String username, String password,
+                               String rootPath, File knownHostsFile) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.rootPath = StorageEntry.normalize(rootPath);
+        this.knownHostsFile = knownHostsFile;
+    }
+
+    @Override
+    public String getRootPath() {
+        return rootPath;
+    }
+
+    @Override
+    protected synchronized List<StorageEntry> fetchList(String path) throws IOException {
+        try {
+            Vector<?> children = channel().ls(path);
+            List<StorageEntry> entries = new ArrayList<>(children.size());
+            List<Integer> links = new ArrayList<>();
+            for (Object child : children) {
+                ChannelSftp.LsEntry lsEntry = (ChannelSftp.LsEntry) child;
+                String name = lsEntry.getFilename();
+                if (name.equals(".") || name.equals("..")) {
+                    continue;
+                }
+                entries.add(toEntry(StorageEntry.childOf(path, name), lsEntry.getAttrs()));
+                if (lsEntry.getAttrs().isLink()) {
+                    links.add(entries.size() - 1);
+                }
+            }
+            resolveLinks(entries, links);
+            return entries;
+        } catch (SftpException e) {
+            throw toIOException(path, e);
+        }
+    }
+
+    // READDIR describes a symbolic link itself, so links are stated in one batch to show what
+    // they point to. A dangling link keeps its own attributes.
+    private void resolveLinks(List<StorageEntry> entries, List<Integer> links) throws IOException {
+        if (links.isEmpty()) {
+            return;
+        }
+        List<String> paths = new ArrayList<>(links.size());
+        for (int index : links) {
+            paths.add(entries.get(index).getPath());
+        }
+        List<StorageEntry> targets = fetchStats(paths);
+        for (int i = 0; i < links.size(); i++) {
+            if (targets.get(i) != null) {
+                entries.set(links.get(i), targets.get(i));
+            }
+        }
+    }
+
+    @Override
+    protected synchronized StorageEntry fetchStat(String path) throws IOException {
+        try {
+            return toEntry(path, channel().stat(path));
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return null;
+            }
+            throw toIOException(path, e);
+        }
+    }
+
+    @Override
+    protected List<StorageEntry> fetchStats(List<String> paths) throws IOException {
+        if (paths.size() <= 1) {
+            return super.fetchStats(paths);
+        }
+
+        // Each channel takes every n-th path, so all of them finish at about the same time
+        int channelCount = Math.min(STAT_CHANNELS, paths.size());
+        ExecutorService executor = statExecutor();
+        List<Future<StorageEntry[]>> futures = new ArrayList<>(channelCount);
+        for (int i = 0; i < channelCount; i++) {
+            final List<String> batch = new ArrayList<>();
+            for (int j = i; j < paths.size(); j += channelCount) {
+                batch.add(paths.get(j));
+            }
+            futures.add(executor.submit(new Callable<StorageEntry[]>() {
+                @Override
+                public StorageEntry[] call() throws IOException {
+                    return statBatch(batch);
+                }
+            }));
+        }
+
+        StorageEntry[] results = new StorageEntry[paths.size()];
+        IOException failure = null;
+        for (int i = 0; i < channelCount; i++) {
+            try {
+                StorageEntry[] batchResults = futures.get(i).get();
+                for (int j = 0; j < batchResults.length; j++) {
+                    results[i + j * channelCount] = batchResults[j];
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for stats");
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return Arrays.asList(results);
+    }
+
+    // Runs on a stat thread with a channel of its own
+    private StorageEntry[] statBatch(List<String> paths) throws IOException {
+        ChannelSftp sftp = borrowStatChannel();
+        boolean reusable = false;
+        try {
+            StorageEntry[] results = new StorageEntry[paths.size()];
+            for (int i = 0; i < paths.size(); i++) {
+                SftpATTRS attrs = statOrNull(sftp, paths.get(i));
+                results[i] = attrs != null ? toEntry(paths.get(i), attrs) : null;
+            }
+            reusable = true;
+            return results;
+        } catch (SftpException e) {
+            // The server answered, so the channel is still good
+            reusable = sftp.isConnected();
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            returnStatChannel(sftp, reusable);
+        }
+    }
+
+    private ChannelSftp borrowStatChannel() throws IOException {
+        synchronized (statChannels) {
+            while (!statChannels.isEmpty()) {
+                ChannelSftp sftp = statChannels.remove(statChannels.size() - 1);
+                if (sftp.isConnected()) {
+                    return sftp;
+                }
+            }
+        }
+        return openChannel();
+    }
+
+    private void returnStatChannel(ChannelSftp sftp, boolean reusable) {
+        synchronized (statChannels) {
+            if (reusable && statExecutor != null && statChannels.size() < STAT_CHANNELS) {
+                statChannels.add(sftp);
+                return;
+            }
+        }
+        sftp.disconnect();
+    }
+
+    private ExecutorService statExecutor() {
+        synchronized (statChannels) {
+            if (statExecutor == null) {
+                statExecutor = Executors.newFixedThreadPool(STAT_CHANNELS);
+            }
+            return statExecutor;
+        }
+    }
+
+    @Override
+    public InputStream openRead(String path) throws IOException {
+        final ChannelSftp transferChannel = openChannel();
+        try {
+            transferChannel.setBulkRequests(BULK_REQUESTS);
+            return new FilterInputStream(transferChannel.get(StorageEntry.normalize(path))) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        transferChannel.disconnect();
+                    }
+                }
+            };
+        } catch (SftpException e) {
+            transferChannel.disconnect();
+            throw toIOException(path, e);
+        } catch (JSchException e) {
+            transferChannel.disconnect();
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected OutputStream fetchWrite(String path) throws IOException {
+        final ChannelSftp transferChannel = openChannel();
+        try {
+            return new FilterOutputStream(transferChannel.put(path, ChannelSftp.OVERWRITE)) {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    out.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        transferChannel.disconnect();
+                    }
+                }
+            };
+        } catch (SftpException e) {
+            transferChannel.disconnect();
+            throw toIOException(path, e);
+        }
+    }
+
+    @Override
+    protected synchronized void performRename(String fromPath, String toPath) throws IOException {
+        try {
+            ChannelSftp sftp = channel();
+            if (statOrNull(sftp, toPath) != null) {
+                throw new IOException("A file with that name already exists");
+            }
+            sftp.rename(fromPath, toPath);
+        } catch (SftpException e) {
+            throw toIOException(fromPath, e);
+        }
+    }
+
+    @Override
+    protected synchronized void performDelete(String path) throws IOException {
+        try {
+            deleteRecursive(channel(), path);
+        } catch (SftpException e) {
+            throw toIOException(path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        synchronized (statChannels) {
+            if (statExecutor != null) {
+                statExecutor.shutdown();
+                statExecutor = null;
+            }
+            for (ChannelSftp sftp : statChannels) {
+                sftp.disconnect();
+            }
+            statChannels.clear();
+        }
+        if (channel != null) {
+            channel.disconnect();
+            channel = null;
+        }
+        synchronized (sessionLock) {
+            if (session != null) {
+                session.disconnect();
+                session = null;
+            }
+        }
+    }
+
+    private void deleteRecursive(ChannelSftp sftp, String path) throws SftpException {
+        SftpATTRS attrs = sftp.lstat(path);
+        if (attrs.isDir()) {
+            for (Object child : sftp.ls(path)) {
+                String name = ((ChannelSftp.LsEntry) child).getFilename();
+                if (!name.equals(".") && !name.equals("..")) {
+                    deleteRecursive(sftp, StorageEntry.childOf(path, name));
+                }
+            }
+            sftp.rmdir(path);
+        } else {
+            sftp.rm(path);
+        }
+    }
+
+    private static SftpATTRS statOrNull(ChannelSftp sftp, String path) throws SftpException {
+        try {
+            return sftp.stat(path);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private ChannelSftp channel() throws IOException {
+        if (channel == null || !channel.isConnected()) {
+            try {
+                channel = openChannel();
+            } catch (IOException e) {
+                channel = null;
+                throw e;
+            }
+        }
+        return channel;
+    }
+
+    private Session session() throws IOException {
+        synchronized (sessionLock) {
+            if (session != null && session.isConnected()) {
+                return session;
+            }
+            try {
+                JSch jsch = new JSch();
+                if (!knownHostsFile.exists()) {
+                    knownHostsFile.createNewFile();
+                }
+                jsch.setKnownHosts(knownHostsFile.getAbsolutePath());
+
+                Session newSession = jsch.getSession(username, host, port);
+                newSession.setPassword(password);
+                // Trust a host key the first time we see it. Once a key is on record the check is
+                // strict, since in "ask" mode JSch would offer to replace a changed key as well
+                if (isKnownHost(jsch)) {
+                    newSession.setConfig("StrictHostKeyChecking", "yes");
+                } else {
+                    newSession.setConfig("StrictHostKeyChecking", "ask");
+                    newSession.setUserInfo(new TrustOnFirstUse());
+                }
+                newSession.connect(CONNECT_TIMEOUT_MILLIS);
+                session = newSession;
+                return session;
+            } catch (JSchException e) {
+                throw new IOException("Unable to connect to " + host + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isKnownHost(JSch jsch) {
+        // known_hosts names hosts on a non-standard port as "[host]:port"
+        String hostKeyName = port == 22 ? host : "[" + host + "]:" + port;
+        HostKey[] keys = jsch.getHostKeyRepository().getHostKey(hostKeyName, null);
+        return keys != null && keys.length > 0;
+    }
+
+    private ChannelSftp openChannel() throws IOException {
+        try {
+            ChannelSftp sftp = (ChannelSftp) session().openChannel("sftp");
+            sftp.connect(CONNECT_TIMEOUT_MILLIS);
+            return sftp;
+        } catch (JSchException e) {
+            throw new IOException("Unable to open SFTP channel: " + e.getMessage(), e);
+        }
+    }
+
+    private static StorageEntry toEntry(String path, SftpATTRS attrs) {
+        boolean directory = attrs.isDir();
+        return new StorageEntry(path, directory, directory ? 0 : attrs.getSize(), attrs.getMTime() * 1000L);
+    }
+
+    private static IOException toIOException(String path, SftpException e) {
+        if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+            return new FileNotFoundException(path);
+        }
+        return new IOException(e.getMessage(), e);
+    }
+
+    // Only installed for hosts without a stored key, so the one question JSch asks is whether
+    // to add the key of a new host
+    private static class TrustOnFirstUse implements UserInfo {
+        @Override
+        public String getPassphrase() {
+            return null;
+        }
+
+        @Override
+        public String getPassword() {
+            return null;
+        }
+
+        @Override
+        public boolean promptPassword(String message) {
+            return false;
+        }
+
+        @Override
+        public boolean promptPassphrase(String message) {
+            return false;
+        }
+
+        @Override
+        public boolean promptYesNo(String message) {
+            return true;
+        }
+
+        @Override
+        public void showMessage(String message) {
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.filemanager;
+
+/**
+ * Metadata for a single file or directory of a {@link StorageProvider}. Paths are absolute
+ * within the provider and always use '/' as separator, e.g. "/Music/track.mp3".
+ */
+public class StorageEntry {
+
+    private final String path;
+    private final boolean directory;
+    private final long length;
+    private final long lastModified;
+
+    public StorageEntry(String path, boolean directory, long length, long lastModified) {
+        this.path = path;
+        this.directory = directory;
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return nameOf(path);
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        while (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    public static String parentOf(String path) {
+        path = normalize(path);
+        int index = path.lastIndexOf('/');
+        return index <= 0 ? "/" : path.substring(0, index);
+    }
+
+    public static String nameOf(String path) {
+        path = normalize(path);
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    public static String childOf(String parentPath, String name) {
+        parentPath = normalize(parentPath);
+        return parentPath.equals("/") ? "/" + name : parentPath + "/" + name;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.filemanager;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+/**
+ * Binds {@link StorageEntry} rows using metadata fetched with the listing, so scrolling
+ * never touches the network.
+ */
+public class StorageEntryAdapter extends ArrayAdapter<StorageEntry> {
+
+    private Context context;
+    private List<StorageEntry> entries;
+
+    public StorageEntryAdapter(Context context, List<StorageEntry> entries) {
+        super(context, R.layout.file_item, entries);
+        this.context = context;
+        this.entries = entries;
+    }
+
+    @NonNull
+    @Override
+    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+        FileAdapter.ViewHolder viewHolder;
+
+        if (convertView == null) {
+            convertView = LayoutInflater.from(context).inflate(R.layout.file_item, parent, false);
+
+            viewHolder = new FileAdapter.ViewHolder();
+            viewHolder.fileName = convertView.findViewById(R.id.file_name);
+            viewHolder.fileDetails = convertView.findViewById(R.id.file_details);
+            viewHolder.fileIcon = convertView.findViewById(R.id.file_icon);
+
+            convertView.setTag(viewHolder);
+        } else {
+            viewHolder = (FileAdapter.ViewHolder) convertView.getTag();
+        }
+
+        StorageEntry entry = entries.get(position);
+        viewHolder.fileName.setText(entry.getName());
+
+        if (entry.isDirectory()) {
+            viewHolder.fileDetails.setText("Folder | " + FileAdapter.formatDate(entry.getLastModified()));
+            viewHolder.fileIcon.setImageResource(R.drawable.ic_folder);
+        } else {
+            viewHolder.fileDetails.setText(FileAdapter.formatFileSize(entry.getLength()) + " | "
+                    + FileAdapter.formatDate(entry.getLastModified()));
+            viewHolder.fileIcon.setImageResource(FileAdapter.getFileIconResource(entry.getName()));
+        }
+
+        return convertView;
+    }
+}
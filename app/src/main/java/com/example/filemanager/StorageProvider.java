@@ -0,0 +1,39 @@
+package com.example.filemanager;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Storage backend the browser can operate on: the local file system or a remote server.
+ * Implementations may block on I/O, so every method must be called off the main thread.
+ */
+public interface StorageProvider extends Closeable {
+
+    String getRootPath();
+
+    /** Lists a directory with full metadata for each child, in no particular order. */
+    List<StorageEntry> list(String path) throws IOException;
+
+    /** @throws FileNotFoundException if nothing exists at the path */
+    StorageEntry stat(String path) throws IOException;
+
+    /**
+     * Stats several paths at once. The result has one element per requested path,
+     * in the same order, with null for paths that do not exist.
+     */
+    List<StorageEntry> statAll(List<String> paths) throws IOException;
+
+    InputStream openRead(String path) throws IOException;
+
+    /** Creates or truncates the file. The upload is complete once the stream is closed. */
+    OutputStream openWrite(String path) throws IOException;
+
+    void rename(String fromPath, String toPath) throws IOException;
+
+    /** Deletes a file, or a directory together with its contents. */
+    void delete(String path) throws IOException;
+}
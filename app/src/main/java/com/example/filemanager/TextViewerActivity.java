@@ -0,0 +1,437 @@
+package com.example.filemanager;
+
+import android.content.DialogInterface;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.InputType;
+import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.ListView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.ViewModelProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Built-in viewer for text and log files of any size. Only the rows on screen are read from
+ * the file; the line index is built in the background while the first lines are already shown.
+ */
+public class TextViewerActivity extends AppCompatActivity {
+
+    public static final String EXTRA_PATH = "com.example.filemanager.extra.PATH";
+
+    private static final Set<String> TEXT_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "txt", "log", "csv", "json", "xml", "md", "ini", "conf", "cfg", "properties"));
+    private static final long PROGRESS_INTERVAL_MILLIS = 250;
+    private static final String STATE_FIRST_VISIBLE_LINE = "first_visible_line";
+
+    /**
+     * Holds the open file and builds its line index, so a configuration change neither reopens
+     * the file nor rescans it.
+     */
+    public static class FileModel extends ViewModel {
+        private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private LargeTextFile textFile;
+        private volatile boolean indexing;
+        private volatile IOException indexError;
+
+        void open(File file) throws IOException {
+            textFile = new LargeTextFile(file);
+            indexing = true;
+            indexExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        textFile.buildIndex(cancelled);
+                    } catch (IOException e) {
+                        indexError = e;
+                    } finally {
+                        indexing = false;
+                    }
+                }
+            });
+        }
+
+        // Returns the error that stopped indexing once, so only one activity reports it
+        IOException takeIndexError() {
+            IOException error = indexError;
+            indexError = null;
+            return error;
+        }
+
+        @Override
+        protected void onCleared() {
+            cancelled.set(true);
+            indexExecutor.shutdown();
+
+            // Mappings already handed out stay valid; background passes stop on the cancel flag
+            if (textFile != null) {
+                try {
+                    textFile.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private ListView listView;
+    private TextView statusTextView;
+    private LineAdapter lineAdapter;
+    private FileModel model;
+    private LargeTextFile textFile;
+    private String lastQuery;
+    private long lastMatchLine = -1;
+    // Line to scroll back to once the index reaches it, after the activity was recreated
+    private long pendingFirstVisibleLine = -1;
+
+    // Searching gets its own thread so a search never waits for the index. Each search has its
+    // own cancel flag, set when a newer search replaces it
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private AtomicBoolean searchCancelled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    static boolean canView(File file) {
+        String name = file.getName();
+        String extension = name.substring(name.lastIndexOf(".") + 1).toLowerCase(Locale.ROOT);
+        return TEXT_EXTENSIONS.contains(extension);
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_text_viewer);
+
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+
+        listView = findViewById(R.id.line_list_view);
+        statusTextView = findViewById(R.id.viewer_status);
+
+        File file = new File(getIntent().getStringExtra(EXTRA_PATH));
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(file.getName());
+        }
+
+        model = new ViewModelProvider(this).get(FileModel.class);
+        if (model.textFile == null) {
+            try {
+                model.open(file);
+            } catch (IOException e) {
+                Toast.makeText(this, "Error opening file: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                finish();
+                return;
+            }
+        }
+        textFile = model.textFile;
+
+        lineAdapter = new LineAdapter();
+        listView.setAdapter(lineAdapter);
+        if (savedInstanceState != null) {
+            pendingFirstVisibleLine = savedInstanceState.getLong(STATE_FIRST_VISIBLE_LINE, -1);
+        }
+        watchIndex();
+    }
+
+    // Shows the lines indexed so far until the model's index is complete
+    private void watchIndex() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                boolean finished = !model.indexing;
+                lineAdapter.setLineCount(textFile.getLineCount());
+                updateStatus();
+                restoreFirstVisibleLine(finished);
+                if (!finished) {
+                    mainHandler.postDelayed(this, PROGRESS_INTERVAL_MILLIS);
+                    return;
+                }
+                IOException error = model.takeIndexError();
+                if (error != null) {
+                    Toast.makeText(TextViewerActivity.this, "Error reading file: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+
+    private void restoreFirstVisibleLine(boolean indexFinished) {
+        if (pendingFirstVisibleLine < 0) {
+            return;
+        }
+        if (pendingFirstVisibleLine < lineAdapter.getCount()) {
+            listView.setSelection((int) pendingFirstVisibleLine);
+            pendingFirstVisibleLine = -1;
+        } else if (indexFinished) {
+            pendingFirstVisibleLine = -1;
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (listView != null) {
+            long firstVisibleLine = pendingFirstVisibleLine >= 0 ? pendingFirstVisibleLine : listView.getFirstVisiblePosition();
+            outState.putLong(STATE_FIRST_VISIBLE_LINE, firstVisibleLine);
+        }
+    }
+
+    private void updateStatus() {
+        String lines = String.format(Locale.getDefault(), "%,d lines", textFile.getLineCount());
+        String size = FileAdapter.formatFileSize(textFile.getLength());
+        if (textFile.isIndexComplete()) {
+            statusTextView.setText(lines + " | " + size);
+        } else {
+            int percent = textFile.getLength() == 0 ? 100
+                    : (int) (textFile.getIndexedBytes() * 100 / textFile.getLength());
+            statusTextView.setText(lines + " | " + size + " | indexing " + percent + "%");
+        }
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.text_viewer_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            case R.id.action_search:
+                showSearchDialog();
+                return true;
+
+            case R.id.action_find_next:
+                if (lastQuery != null) {
+                    search(lastQuery, lastMatchLine + 1);
+                } else {
+                    showSearchDialog();
+                }
+                return true;
+
+            case R.id.action_go_to_line:
+                showGoToLineDialog();
+                return true;
+
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    private void showGoToLineDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Go to Line");
+
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_NUMBER);
+        builder.setView(input);
+
+        builder.setPositiveButton("Go", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                long line;
+                try {
+                    line = Long.parseLong(input.getText().toString().trim());
+                } catch (NumberFormatException e) {
+                    Toast.makeText(TextViewerActivity.this, "Enter a line number", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+
+                if (line >= 1 && line <= lineAdapter.getCount()) {
+                    listView.setSelection((int) (line - 1));
+                } else if (!textFile.isIndexComplete()) {
+                    Toast.makeText(TextViewerActivity.this, "Line not indexed yet", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(TextViewerActivity.this, "Line out of range", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.cancel();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void showSearchDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle("Search");
+
+        final EditText input = new EditText(this);
+        input.setInputType(InputType.TYPE_CLASS_TEXT);
+        if (lastQuery != null) {
+            input.setText(lastQuery);
+        }
+        builder.setView(input);
+
+        builder.setPositiveButton("Search", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                String query = input.getText().toString();
+                if (!query.isEmpty()) {
+                    lastQuery = query;
+                    search(query, listView.getFirstVisiblePosition());
+                }
+            }
+        });
+
+        builder.setNegativeButton("Cancel", new DialogInterface.OnClickListener() {
+            @Override
+            public void onClick(DialogInterface dialog, int which) {
+                dialog.cancel();
+            }
+        });
+
+        builder.show();
+    }
+
+    private void search(final String query, final long fromLine) {
+        statusTextView.setText("Searching for \"" + query + "\"...");
+        searchCancelled.set(true);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        searchCancelled = cancelled;
+
+        searchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled.get()) {
+                    return;
+                }
+                final long match;
+                try {
+                    match = textFile.findNext(query, fromLine, cancelled);
+                } catch (IOException e) {
+                    showMessage("Error searching: " + e.getMessage());
+                    return;
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // A cancelled search reports no match, which must not look like one
+                        if (isFinishing() || isDestroyed() || cancelled.get()) {
+                            return;
+                        }
+                        updateStatus();
+                        if (match >= 0 && match < lineAdapter.getCount()) {
+                            lastMatchLine = match;
+                            listView.setSelection((int) match);
+                        } else if (match >= 0) {
+                            Toast.makeText(TextViewerActivity.this, "Match found past the indexed lines, try again shortly", Toast.LENGTH_SHORT).show();
+                        } else {
+                            Toast.makeText(TextViewerActivity.this, "No more matches", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void showMessage(final String message) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!isFinishing() && !isDestroyed()) {
+                    Toast.makeText(TextViewerActivity.this, message, Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchCancelled.set(true);
+        mainHandler.removeCallbacksAndMessages(null);
+        searchExecutor.shutdown();
+        // The file and its index belong to the model, which closes them once the viewer is finished
+    }
+
+    private class LineAdapter extends BaseAdapter {
+
+        // Only changed on the main thread, so the ListView always sees a consistent count
+        private int lineCount;
+
+        void setLineCount(long count) {
+            int newCount = (int) Math.min(count, Integer.MAX_VALUE);
+            if (newCount != lineCount) {
+                lineCount = newCount;
+                notifyDataSetChanged();
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return lineCount;
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return position;
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            ViewHolder viewHolder;
+
+            if (convertView == null) {
+                convertView = LayoutInflater.from(TextViewerActivity.this).inflate(R.layout.text_line_item, parent, false);
+
+                viewHolder = new ViewHolder();
+                viewHolder.lineNumber = convertView.findViewById(R.id.line_number);
+                viewHolder.lineText = convertView.findViewById(R.id.line_text);
+
+                convertView.setTag(viewHolder);
+            } else {
+                viewHolder = (ViewHolder) convertView.getTag();
+            }
+
+            String line;
+            try {
+                line = textFile.readLine(position);
+            } catch (IOException e) {
+                line = null;
+            }
+
+            viewHolder.lineNumber.setText(String.valueOf(position + 1));
+            viewHolder.lineText.setText(line != null ? line : "");
+            return convertView;
+        }
+    }
+
+    static class ViewHolder {
+        TextView lineNumber;
+        TextView lineText;
+    }
+}
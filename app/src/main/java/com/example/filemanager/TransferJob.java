@@ -0,0 +1,408 @@
+package com.example.filemanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A copy or move backed by a {@link TransferJournal}. The whole source tree is planned up
+ * front; files are then copied in chunks with a journal checkpoint every
+ * {@link #CHECKPOINT_BYTES}. A job resumed after the process died skips files whose copy is
+ * verified complete and continues a partial file from its last checkpoint. A move only
+ * deletes its sources once every file has been copied.
+ */
+public class TransferJob {
+
+    public interface ProgressListener {
+        /** Called on the transfer thread after every chunk. */
+        void onProgress(long bytesDone, long bytesTotal);
+    }
+
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final long CHECKPOINT_BYTES = 8 * 1024 * 1024;
+    private static final long CHUNK_SIZE = 1024 * 1024;
+
+    // Journals of the jobs this process has queued, is running or is discarding, which must not
+    // be offered for resuming
+    private static final Set<String> running = new HashSet<>();
+
+    private final TransferJournal journal;
+    private final File source;
+    private final File destination;
+    private boolean sourcesRemaining;
+
+    // Only touched on the thread running the job
+    private long bytesDone;
+    private long bytesTotal;
+
+    private TransferJob(TransferJournal journal) {
+        this.journal = journal;
+        this.source = new File(journal.getSourcePath());
+        this.destination = new File(journal.getDestinationPath());
+    }
+
+    /** Plans a new job and writes its journal. Walks the source tree, so call it off the main thread. */
+    public static TransferJob create(File journalDirectory, int type, File source, File destination) throws IOException {
+        return createAt(newJournalFile(journalDirectory), type, source, destination);
+    }
+
+    /** Like {@link #create}, with a journal file picked by {@link #newJournalFile} beforehand. */
+    static TransferJob createAt(File journalFile, int type, File source, File destination) throws IOException {
+        if (!source.exists()) {
+            throw new IOException(source.getName() + " no longer exists");
+        }
+        String sourcePath = source.getAbsolutePath();
+        String destinationPath = destination.getAbsolutePath();
+        if (destinationPath.equals(sourcePath) || destinationPath.startsWith(sourcePath + File.separator)) {
+            throw new IOException("Cannot copy a folder into itself");
+        }
+
+        List<TransferJournal.Entry> entries = new ArrayList<>();
+        plan(source, "", entries);
+
+        journalFile.getParentFile().mkdirs();
+        return new TransferJob(TransferJournal.create(journalFile, type, source, destination, entries));
+    }
+
+    /** Picks a name for a new journal that is neither on disk nor reserved by this process. */
+    static File newJournalFile(File journalDirectory) {
+        File journalFile = new File(journalDirectory, System.currentTimeMillis() + JOURNAL_SUFFIX);
+        for (int i = 1; journalFile.exists() || isRunning(journalFile); i++) {
+            journalFile = new File(journalDirectory, System.currentTimeMillis() + "-" + i + JOURNAL_SUFFIX);
+        }
+        return journalFile;
+    }
+
+    /**
+     * Marks a journal as in use by this process from the moment its job is queued, so
+     * {@link #findUnfinished} does not offer it meanwhile. Returns false if it already is.
+     */
+    static boolean markRunning(File journalFile) {
+        synchronized (running) {
+            return running.add(journalFile.getAbsolutePath());
+        }
+    }
+
+    static void markStopped(File journalFile) {
+        synchronized (running) {
+            running.remove(journalFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the jobs left unfinished by an earlier process. Journals that cannot be resumed,
+     * because they are unreadable or died before their plan was written, are deleted.
+     */
+    public static List<TransferJob> findUnfinished(File journalDirectory) {
+        List<TransferJob> jobs = new ArrayList<>();
+        File[] files = journalDirectory.listFiles();
+        if (files == null) {
+            return jobs;
+        }
+
+        for (File file : files) {
+            if (!file.getName().endsWith(JOURNAL_SUFFIX) || isRunning(file)) {
+                continue;
+            }
+            try {
+                TransferJournal journal = TransferJournal.read(file);
+                if (journal.isPlanComplete()) {
+                    jobs.add(new TransferJob(journal));
+                    continue;
+                }
+            } catch (IOException ignored) {
+                // Falls through to deleting it
+            }
+            file.delete();
+        }
+        return jobs;
+    }
+
+    // Pre-order, so a directory always comes before its children, and sorted for a stable order
+    private static void plan(File file, String relativePath, List<TransferJournal.Entry> entries) {
+        if (file.isDirectory()) {
+            entries.add(new TransferJournal.Entry(relativePath, true, 0, file.lastModified()));
+            String[] names = file.list();
+            if (names != null) {
+                Arrays.sort(names);
+                for (String name : names) {
+                    plan(new File(file, name), relativePath.isEmpty() ? name : relativePath + "/" + name, entries);
+                }
+            }
+        } else {
+            entries.add(new TransferJournal.Entry(relativePath, false, file.length(), file.lastModified()));
+        }
+    }
+
+    private static boolean isRunning(File journalFile) {
+        synchronized (running) {
+            return running.contains(journalFile.getAbsolutePath());
+        }
+    }
+
+    public int getType() {
+        return journal.getType();
+    }
+
+    File getJournalFile() {
+        return journal.getFile();
+    }
+
+    public File getSource() {
+        return source;
+    }
+
+    public File getDestination() {
+        return destination;
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (TransferJournal.Entry entry : journal.getEntries()) {
+            total += entry.getSize();
+        }
+        return total;
+    }
+
+    public long getCompletedBytes() {
+        long completed = 0;
+        for (TransferJournal.Entry entry : journal.getEntries()) {
+            completed += entry.getOffset();
+        }
+        return completed;
+    }
+
+    /** True if a finished move left some sources behind because they changed after being copied. */
+    public boolean hasRemainingSources() {
+        return sourcesRemaining;
+    }
+
+    /**
+     * Runs or resumes the job on the calling thread. Returns true once it has finished and its
+     * journal is gone, or false if it was cancelled, in which case it can be resumed later.
+     * Callers that share the journal directory with {@link #findUnfinished} mark the journal
+     * running first.
+     */
+    public boolean run(AtomicBoolean cancelled, ProgressListener listener) throws IOException {
+        try {
+            if (!journal.isCommitted()) {
+                if (!copyAll(cancelled, listener)) {
+                    return false;
+                }
+                if (journal.getType() == TransferJournal.TYPE_MOVE) {
+                    journal.recordCommit();
+                }
+            }
+            if (journal.getType() == TransferJournal.TYPE_MOVE) {
+                deleteSources();
+            }
+            journal.delete();
+            return true;
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Gives up on the job, removing destination files it started but did not finish, and
+     * directories it created that are left empty. Files it never touched stay, even when a
+     * file of the same name was planned.
+     *
+     * Works from the journal as it is on disk now, since the job may have been resumed since it
+     * was found. Does nothing if the journal is gone because the job finished or was discarded.
+     */
+    public void discard() {
+        File journalFile = journal.getFile();
+        try {
+            journal.close();
+        } catch (IOException ignored) {
+        }
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        TransferJournal current;
+        try {
+            current = TransferJournal.read(journalFile);
+        } catch (IOException e) {
+            // Nothing left to tell which files are ours
+            journalFile.delete();
+            return;
+        }
+
+        if (!current.isCommitted()) {
+            List<TransferJournal.Entry> entries = current.getEntries();
+            // Children before parents, so a directory is empty by the time it is reached
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                TransferJournal.Entry entry = entries.get(i);
+                if (entry.isStarted() && (entry.isDirectory() || !entry.isDone())) {
+                    resolve(destination, entry.getRelativePath()).delete();
+                }
+            }
+        }
+        current.delete();
+    }
+
+    private boolean copyAll(AtomicBoolean cancelled, ProgressListener listener) throws IOException {
+        List<TransferJournal.Entry> entries = journal.getEntries();
+        bytesDone = 0;
+        bytesTotal = getTotalBytes();
+
+        for (int i = 0; i < entries.size(); i++) {
+            if (cancelled.get()) {
+                return false;
+            }
+
+            TransferJournal.Entry entry = entries.get(i);
+            File sourceFile = resolve(source, entry.getRelativePath());
+            File destinationFile = resolve(destination, entry.getRelativePath());
+
+            if (entry.isDirectory()) {
+                // Only a directory the job creates is started, and removed again on discard
+                if (!entry.isStarted() && !destinationFile.exists()) {
+                    journal.recordStart(i);
+                }
+                destinationFile.mkdirs();
+                if (!destinationFile.isDirectory()) {
+                    throw new IOException("Failed to create " + destinationFile.getName());
+                }
+                if (!entry.isDone()) {
+                    journal.recordDone(i);
+                }
+                continue;
+            }
+
+            if (entry.isDone() && isVerified(entry, sourceFile, destinationFile)) {
+                bytesDone += entry.getSize();
+                continue;
+            }
+
+            if (!copyFile(i, entry, sourceFile, destinationFile, cancelled, listener)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A finished file counts as copied while it is still there with its planned size and the
+    // source is unchanged. length() alone would pass a missing empty file
+    private static boolean isVerified(TransferJournal.Entry entry, File sourceFile, File destinationFile) {
+        return destinationFile.isFile() && destinationFile.length() == entry.getSize()
+                && (!sourceFile.exists() || isUnchanged(entry, sourceFile));
+    }
+
+    private static boolean isUnchanged(TransferJournal.Entry entry, File sourceFile) {
+        return sourceFile.length() == entry.getSize() && sourceFile.lastModified() == entry.getLastModified();
+    }
+
+    private boolean copyFile(int index, TransferJournal.Entry entry, File sourceFile, File destinationFile,
+                             AtomicBoolean cancelled, ProgressListener listener) throws IOException {
+        if (!sourceFile.exists()) {
+            throw new IOException(sourceFile.getName() + " no longer exists");
+        }
+
+        // Continue from the last checkpoint unless the source changed or a finished copy failed verification
+        long position;
+        if (entry.isDone() || !isUnchanged(entry, sourceFile)) {
+            long oldSize = entry.getSize();
+            journal.recordRestart(index, sourceFile.length(), sourceFile.lastModified());
+            bytesTotal += entry.getSize() - oldSize;
+            position = 0;
+        } else {
+            if (!entry.isStarted()) {
+                // Synced before the destination is opened, so a discard after a crash knows
+                // whether a file of that name is ours to delete
+                journal.recordStart(index);
+            }
+            position = Math.min(entry.getOffset(), destinationFile.length());
+        }
+        bytesDone += position;
+
+        long size = entry.getSize();
+        long resumedFrom = position;
+        PerfMetrics.beginSection("copy");
+        long copyStart = System.nanoTime();
+        FileInputStream in = null;
+        RandomAccessFile out = null;
+        try {
+            // Opened inside the try, so a failed open still ends the trace section
+            in = new FileInputStream(sourceFile);
+            out = new RandomAccessFile(destinationFile, "rw");
+            FileChannel sourceChannel = in.getChannel();
+            FileChannel destChannel = out.getChannel();
+            // Anything past the checkpoint may not have reached the disk, so it is written again
+            destChannel.truncate(position);
+
+            long sinceCheckpoint = 0;
+            while (position < size) {
+                if (cancelled.get()) {
+                    destChannel.force(false);
+                    journal.recordProgress(index, position);
+                    return false;
+                }
+
+                sourceChannel.position(position);
+                long copied = destChannel.transferFrom(sourceChannel, position, Math.min(CHUNK_SIZE, size - position));
+                if (copied <= 0) {
+                    throw new IOException(sourceFile.getName() + " changed while it was being copied");
+                }
+                position += copied;
+                sinceCheckpoint += copied;
+                bytesDone += copied;
+
+                if (sinceCheckpoint >= CHECKPOINT_BYTES && position < size) {
+                    destChannel.force(false);
+                    journal.recordProgress(index, position);
+                    sinceCheckpoint = 0;
+                }
+                if (listener != null) {
+                    listener.onProgress(bytesDone, bytesTotal);
+                }
+            }
+
+            destChannel.force(false);
+            journal.recordDone(index);
+            return true;
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+            if (position > resumedFrom) {
+                PerfMetrics.recordCopy(position - resumedFrom, copyStart);
+            }
+            PerfMetrics.endSection();
+        }
+    }
+
+    // Children before parents, and only planned files that are still unchanged, so nothing
+    // added to or edited in the source after it was copied is lost
+    private void deleteSources() {
+        List<TransferJournal.Entry> entries = journal.getEntries();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            TransferJournal.Entry entry = entries.get(i);
+            File sourceFile = resolve(source, entry.getRelativePath());
+            if (!sourceFile.exists()) {
+                continue;
+            }
+            if (entry.isDirectory() ? !sourceFile.delete()
+                    : !isUnchanged(entry, sourceFile) || !sourceFile.delete()) {
+                sourcesRemaining = true;
+            }
+        }
+    }
+
+    private static File resolve(File root, String relativePath) {
+        return relativePath.isEmpty() ? root : new File(root, relativePath);
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.filemanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Append-only log of a copy or move job, kept so the job can be resumed after the process
+ * dies. The header names the source and destination, followed by one PLAN record per
+ * planned entry. While the job runs it appends a START record before it first writes to a
+ * destination, PROGRESS records (bytes of a file known to be on disk), DONE records and
+ * finally COMMIT once every file is copied.
+ *
+ * Every record after the plan is synced before the job moves on, and data is always forced
+ * to the destination before the record that vouches for it. A record torn by a crash is
+ * ignored on read and cut off before the next append.
+ */
+public class TransferJournal implements Closeable {
+
+    public static final int TYPE_COPY = 1;
+    public static final int TYPE_MOVE = 2;
+
+    private static final int MAGIC = 0x464d544a; // "FMTJ"
+    private static final int VERSION = 1;
+
+    // Record types start at 1 so zero-filled space left by a crash never parses as a record
+    private static final byte RECORD_PLAN = 1;
+    private static final byte RECORD_PLAN_COMPLETE = 2;
+    private static final byte RECORD_PROGRESS = 3;
+    private static final byte RECORD_DONE = 4;
+    private static final byte RECORD_RESTART = 5;
+    private static final byte RECORD_COMMIT = 6;
+    private static final byte RECORD_START = 7;
+
+    public static class Entry {
+        final String relativePath;
+        final boolean directory;
+        long size;
+        long lastModified;
+        long offset;
+        boolean started;
+        boolean done;
+
+        public Entry(String relativePath, boolean directory, long size, long lastModified) {
+            this.relativePath = relativePath;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /** Bytes of the destination file known to be on disk. */
+        public long getOffset() {
+            return offset;
+        }
+
+        /** True once the job has created or truncated the destination, so it is the job's to remove. */
+        public boolean isStarted() {
+            return started;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private final File file;
+    private final int type;
+    private final String sourcePath;
+    private final String destinationPath;
+    private final List<Entry> entries;
+    private boolean planComplete;
+    private boolean committed;
+    private long validLength;
+
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+
+    private TransferJournal(File file, int type, String sourcePath, String destinationPath, List<Entry> entries) {
+        this.file = file;
+        this.type = type;
+        this.sourcePath = sourcePath;
+        this.destinationPath = destinationPath;
+        this.entries = entries;
+    }
+
+    /** Writes a new journal holding the complete plan. */
+    public static TransferJournal create(File file, int type, File source, File destination,
+                                         List<Entry> entries) throws IOException {
+        TransferJournal journal = new TransferJournal(file, type, source.getAbsolutePath(),
+                destination.getAbsolutePath(), entries);
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(type);
+        data.writeUTF(journal.sourcePath);
+        data.writeUTF(journal.destinationPath);
+        for (Entry entry : entries) {
+            data.writeByte(RECORD_PLAN);
+            data.writeUTF(entry.relativePath);
+            data.writeBoolean(entry.directory);
+            data.writeLong(entry.size);
+            data.writeLong(entry.lastModified);
+        }
+        data.writeByte(RECORD_PLAN_COMPLETE);
+        data.flush();
+
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try {
+            buffer.writeTo(fileOut);
+            fileOut.getFD().sync();
+        } finally {
+            fileOut.close();
+        }
+
+        journal.planComplete = true;
+        journal.validLength = buffer.size();
+        return journal;
+    }
+
+    /** Reads a journal, replaying its records onto the plan. */
+    public static TransferJournal read(File file) throws IOException {
+        byte[] bytes = readFully(file);
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(buffer);
+
+        TransferJournal journal;
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a transfer journal: " + file);
+            }
+            int type = in.readInt();
+            String sourcePath = in.readUTF();
+            String destinationPath = in.readUTF();
+            journal = new TransferJournal(file, type, sourcePath, destinationPath, new ArrayList<Entry>());
+        } catch (EOFException e) {
+            throw new IOException("Truncated transfer journal: " + file);
+        }
+
+        journal.validLength = bytes.length - buffer.available();
+        try {
+            while (journal.apply(in)) {
+                journal.validLength = bytes.length - buffer.available();
+            }
+        } catch (EOFException e) {
+            // A torn last record; everything before it still counts
+        }
+        return journal;
+    }
+
+    // Returns false at the first byte that does not start a valid record
+    private boolean apply(DataInputStream in) throws IOException {
+        byte record = in.readByte();
+        switch (record) {
+            case RECORD_PLAN: {
+                if (planComplete) {
+                    return false;
+                }
+                String relativePath = in.readUTF();
+                boolean directory = in.readBoolean();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                entries.add(new Entry(relativePath, directory, size, lastModified));
+                return true;
+            }
+
+            case RECORD_PLAN_COMPLETE:
+                planComplete = true;
+                return true;
+
+            case RECORD_PROGRESS: {
+                Entry entry = entryOrNull(in.readInt());
+                long offset = in.readLong();
+                if (entry == null) {
+                    return false;
+                }
+                entry.offset = Math.max(entry.offset, offset);
+                entry.started = true;
+                return true;
+            }
+
+            case RECORD_START: {
+                Entry entry = entryOrNull(in.readInt());
+                if (entry == null) {
+                    return false;
+                }
+                entry.started = true;
+                return true;
+            }
+
+            case RECORD_DONE: {
+                Entry entry = entryOrNull(in.readInt());
+                if (entry == null) {
+                    return false;
+                }
+                entry.done = true;
+                entry.offset = entry.size;
+                entry.started = true;
+                return true;
+            }
+
+            case RECORD_RESTART: {
+                Entry entry = entryOrNull(in.readInt());
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                if (entry == null) {
+                    return false;
+                }
+                restart(entry, size, lastModified);
+                return true;
+            }
+
+            case RECORD_COMMIT:
+                committed = true;
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    private Entry entryOrNull(int index) {
+        return planComplete && index >= 0 && index < entries.size() ? entries.get(index) : null;
+    }
+
+    // A restarted entry is about to be truncated, so it counts as started
+    private static void restart(Entry entry, long size, long lastModified) {
+        entry.size = size;
+        entry.lastModified = lastModified;
+        entry.offset = 0;
+        entry.started = true;
+        entry.done = false;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getSourcePath() {
+        return sourcePath;
+    }
+
+    public String getDestinationPath() {
+        return destinationPath;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** False if the process died while the plan was being written, before anything was copied. */
+    public boolean isPlanComplete() {
+        return planComplete;
+    }
+
+    /** True once every file has been copied; a move then only has sources left to delete. */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    /** Records that the job is about to create or truncate the entry's destination. */
+    public void recordStart(int index) throws IOException {
+        openForAppend();
+        out.writeByte(RECORD_START);
+        out.writeInt(index);
+        sync();
+        entries.get(index).started = true;
+    }
+
+    /** Records that the first offset bytes of the entry's destination have been forced to disk. */
+    public void recordProgress(int index, long offset) throws IOException {
+        openForAppend();
+        out.writeByte(RECORD_PROGRESS);
+        out.writeInt(index);
+        out.writeLong(offset);
+        sync();
+        Entry entry = entries.get(index);
+        entry.offset = Math.max(entry.offset, offset);
+        entry.started = true;
+    }
+
+    public void recordDone(int index) throws IOException {
+        openForAppend();
+        out.writeByte(RECORD_DONE);
+        out.writeInt(index);
+        sync();
+        Entry entry = entries.get(index);
+        entry.done = true;
+        entry.offset = entry.size;
+        entry.started = true;
+    }
+
+    /** Starts an entry over, with the source's current size and modification time. */
+    public void recordRestart(int index, long size, long lastModified) throws IOException {
+        openForAppend();
+        out.writeByte(RECORD_RESTART);
+        out.writeInt(index);
+        out.writeLong(size);
+        out.writeLong(lastModified);
+        sync();
+        restart(entries.get(index), size, lastModified);
+    }
+
+    public void recordCommit() throws IOException {
+        openForAppend();
+        out.writeByte(RECORD_COMMIT);
+        sync();
+        committed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOut != null) {
+            fileOut.close();
+            fileOut = null;
+            out = null;
+        }
+    }
+
+    public boolean delete() {
+        try {
+            close();
+        } catch (IOException ignored) {
+        }
+        return file.delete();
+    }
+
+    private void openForAppend() throws IOException {
+        if (out != null) {
+            return;
+        }
+        if (!planComplete) {
+            throw new IOException("Transfer journal has no complete plan: " + file);
+        }
+        fileOut = new FileOutputStream(file, true);
+        // Drop a torn record so new records are not appended after it
+        fileOut.getChannel().truncate(validLength);
+        out = new DataOutputStream(fileOut);
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+        validLength = fileOut.getChannel().size();
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.min(file.length(), Integer.MAX_VALUE));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
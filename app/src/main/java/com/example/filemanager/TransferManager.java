@@ -0,0 +1,287 @@
+package com.example.filemanager;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs copies and moves one at a time for the whole process, so a transfer keeps its progress
+ * and its cancel handle when the activity that started it is recreated. An activity attaches a
+ * {@link Listener} while it is alive; a result that arrives while none is attached is held for
+ * the next one. If the process dies the job's journal takes over instead.
+ *
+ * Everything except the transfer itself runs on the callback executor, the main thread in the app.
+ */
+public class TransferManager {
+
+    public interface Listener {
+        /** A transfer is running; called when the listener attaches and then as it makes progress. */
+        void onTransferProgress(Transfer transfer);
+
+        /** Called once per transfer, after it stopped for any reason. */
+        void onTransferFinished(Transfer transfer);
+    }
+
+    /** State of one transfer. Only read it from the callback executor. */
+    public static class Transfer {
+        private final int type;
+        private final String name;
+        private final File journalFile;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private TransferJob job;
+        private long bytesDone;
+        private long bytesTotal;
+        private boolean stopped;
+        private boolean finished;
+        private IOException error;
+
+        Transfer(int type, String name, File journalFile) {
+            this.type = type;
+            this.name = name;
+            this.journalFile = journalFile;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBytesDone() {
+            return bytesDone;
+        }
+
+        public long getBytesTotal() {
+            return bytesTotal;
+        }
+
+        /** The job, or null if it could not be planned. */
+        public TransferJob getJob() {
+            return job;
+        }
+
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /** True if the job ran to completion; false if it was cancelled or failed. */
+        public boolean isFinished() {
+            return finished;
+        }
+
+        public IOException getError() {
+            return error;
+        }
+
+        /** Stops the job at its next chunk; it can be resumed later from its journal. */
+        public void cancel() {
+            cancelled.set(true);
+        }
+    }
+
+    private static final long PROGRESS_INTERVAL_NANOS = 250 * 1000 * 1000L;
+
+    private static TransferManager instance;
+
+    private final Executor callbackExecutor;
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor();
+
+    // Only touched on the callback executor
+    private Transfer current;
+    private Listener listener;
+    private boolean unfinishedChecked;
+
+    TransferManager(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    public static synchronized TransferManager getInstance() {
+        if (instance == null) {
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new TransferManager(new Executor() {
+                @Override
+                public void execute(Runnable runnable) {
+                    mainHandler.post(runnable);
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Attaches a listener in place of any other. A running transfer is reported to it right
+     * away, and a result that arrived while no listener was attached is delivered to it.
+     */
+    public void setListener(Listener newListener) {
+        listener = newListener;
+        if (current == null) {
+            return;
+        }
+        if (current.stopped) {
+            deliverResult();
+        } else {
+            listener.onTransferProgress(current);
+        }
+    }
+
+    /** Detaches the listener, unless another one has replaced it already. */
+    public void removeListener(Listener oldListener) {
+        if (listener == oldListener) {
+            listener = null;
+        }
+    }
+
+    /**
+     * Returns true the first time it is called, so jobs left unfinished by an earlier process
+     * are offered once per process rather than on every activity creation.
+     */
+    public boolean claimUnfinishedCheck() {
+        if (unfinishedChecked) {
+            return false;
+        }
+        unfinishedChecked = true;
+        return true;
+    }
+
+    /** True while a transfer runs or its result is waiting for a listener. */
+    public boolean isBusy() {
+        return current != null;
+    }
+
+    /** Plans and runs a new job. Returns false if another transfer is still busy. */
+    public boolean start(final int type, File journalDirectory, final File source, final File destination) {
+        if (current != null) {
+            return false;
+        }
+        // Reserved before the journal is written, so it is never mistaken for an abandoned one
+        final File journalFile = TransferJob.newJournalFile(journalDirectory);
+        TransferJob.markRunning(journalFile);
+        final Transfer transfer = begin(type, source.getName(), journalFile);
+        transferExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                TransferJob job;
+                try {
+                    job = TransferJob.createAt(journalFile, type, source, destination);
+                } catch (IOException e) {
+                    stop(transfer, null, false, e);
+                    return;
+                }
+                execute(transfer, job);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Resumes an unfinished job. Returns false if another transfer is still busy, or if this job
+     * is already queued or being discarded.
+     */
+    public boolean resume(final TransferJob job) {
+        if (current != null || !TransferJob.markRunning(job.getJournalFile())) {
+            return false;
+        }
+        final Transfer transfer = begin(job.getType(), job.getSource().getName(), job.getJournalFile());
+        transferExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                execute(transfer, job);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Discards an unfinished job after any running transfer, so the two never overlap. Does
+     * nothing if the job has been resumed and is still queued or running.
+     */
+    public void discard(final TransferJob job) {
+        if (!TransferJob.markRunning(job.getJournalFile())) {
+            return;
+        }
+        transferExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    job.discard();
+                } finally {
+                    TransferJob.markStopped(job.getJournalFile());
+                }
+            }
+        });
+    }
+
+    private Transfer begin(int type, String name, File journalFile) {
+        current = new Transfer(type, name, journalFile);
+        if (listener != null) {
+            listener.onTransferProgress(current);
+        }
+        return current;
+    }
+
+    // Runs on the transfer thread
+    private void execute(final Transfer transfer, final TransferJob job) {
+        boolean finished;
+        try {
+            finished = job.run(transfer.cancelled, new TransferJob.ProgressListener() {
+                private long lastUpdate = System.nanoTime() - PROGRESS_INTERVAL_NANOS;
+
+                @Override
+                public void onProgress(final long bytesDone, final long bytesTotal) {
+                    long now = System.nanoTime();
+                    if (now - lastUpdate < PROGRESS_INTERVAL_NANOS) {
+                        return;
+                    }
+                    lastUpdate = now;
+
+                    callbackExecutor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            transfer.bytesDone = bytesDone;
+                            transfer.bytesTotal = bytesTotal;
+                            if (transfer == current && !transfer.stopped && listener != null) {
+                                listener.onTransferProgress(transfer);
+                            }
+                        }
+                    });
+                }
+            });
+        } catch (IOException e) {
+            stop(transfer, job, false, e);
+            return;
+        }
+        stop(transfer, job, finished, null);
+    }
+
+    // Runs on the transfer thread
+    private void stop(final Transfer transfer, final TransferJob job, final boolean finished, final IOException error) {
+        callbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Offered for resuming again from here on if it did not finish
+                TransferJob.markStopped(transfer.journalFile);
+                transfer.job = job;
+                transfer.finished = finished;
+                transfer.error = error;
+                transfer.stopped = true;
+                if (listener != null) {
+                    deliverResult();
+                }
+            }
+        });
+    }
+
+    private void deliverResult() {
+        Transfer transfer = current;
+        current = null;
+        listener.onTransferFinished(transfer);
+    }
+}
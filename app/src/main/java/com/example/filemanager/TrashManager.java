@@ -0,0 +1,382 @@
+package com.example.filemanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Per-volume trash. Deleting moves the item into {@code <volume>/.trash/files} with a single
+ * rename, which takes the same time for a file as for a huge tree because it never leaves its
+ * volume. The original path and deletion time are kept next to it in
+ * {@code .trash/info/<id>.trashinfo}. The actual recursive delete happens later in
+ * {@link #purge}, which evicts items past {@link #MAX_AGE_MILLIS} and then the oldest items
+ * while the trash takes up more than {@link #MAX_SIZE_PERCENT}% of the volume.
+ */
+public class TrashManager {
+
+    static final String TRASH_DIRECTORY_NAME = ".trash";
+    static final long MAX_AGE_MILLIS = 30L * 24 * 60 * 60 * 1000;
+    static final int MAX_SIZE_PERCENT = 10;
+
+    private static final String FILES_DIRECTORY = "files";
+    private static final String INFO_DIRECTORY = "info";
+    private static final String PURGE_DIRECTORY = "purging";
+    private static final String INFO_SUFFIX = ".trashinfo";
+    private static final String KEY_PATH = "path";
+    private static final String KEY_DELETED = "deleted";
+    private static final String KEY_SIZE = "size";
+
+    // Shared by every instance so a purge never races a restore from a recreated activity
+    private static final Object LOCK = new Object();
+
+    private final List<File> volumeRoots = new ArrayList<>();
+
+    public TrashManager(List<File> volumeRoots) {
+        for (File root : volumeRoots) {
+            File absoluteRoot = root.getAbsoluteFile();
+            if (!this.volumeRoots.contains(absoluteRoot)) {
+                this.volumeRoots.add(absoluteRoot);
+            }
+        }
+    }
+
+    public static class Item {
+        private final File volumeRoot;
+        private final String id;
+        private final String originalPath;
+        private final long deletedAt;
+        private final long size;
+
+        Item(File volumeRoot, String id, String originalPath, long deletedAt, long size) {
+            this.volumeRoot = volumeRoot;
+            this.id = id;
+            this.originalPath = originalPath;
+            this.deletedAt = deletedAt;
+            this.size = size;
+        }
+
+        public String getName() {
+            return new File(originalPath).getName();
+        }
+
+        public String getOriginalPath() {
+            return originalPath;
+        }
+
+        public long getDeletedAt() {
+            return deletedAt;
+        }
+
+        /** Size in bytes, or -1 until the purge job has measured it. */
+        public long getSize() {
+            return size;
+        }
+    }
+
+    /** Returns the volume whose trash would receive the file, or null if it is on no known volume. */
+    public File getVolumeRoot(File file) {
+        String path = file.getAbsolutePath();
+        File best = null;
+        for (File root : volumeRoots) {
+            String rootPath = root.getPath();
+            if (path.startsWith(rootPath + File.separator)
+                    && (best == null || rootPath.length() > best.getPath().length())) {
+                best = root;
+            }
+        }
+        return best;
+    }
+
+    public boolean isTrashDirectory(File file) {
+        return TRASH_DIRECTORY_NAME.equals(file.getName())
+                && volumeRoots.contains(file.getAbsoluteFile().getParentFile());
+    }
+
+    public Item moveToTrash(File file) throws IOException {
+        File volumeRoot = getVolumeRoot(file);
+        if (volumeRoot == null) {
+            throw new IOException("No trash on this volume");
+        }
+        File trashDirectory = new File(volumeRoot, TRASH_DIRECTORY_NAME);
+        if (file.getAbsolutePath().startsWith(trashDirectory.getPath() + File.separator)) {
+            throw new IOException("Already in the trash");
+        }
+
+        synchronized (LOCK) {
+            File filesDirectory = new File(trashDirectory, FILES_DIRECTORY);
+            File infoDirectory = new File(trashDirectory, INFO_DIRECTORY);
+            filesDirectory.mkdirs();
+            infoDirectory.mkdirs();
+            if (!filesDirectory.isDirectory() || !infoDirectory.isDirectory()) {
+                throw new IOException("Unable to create the trash directory");
+            }
+
+            long now = System.currentTimeMillis();
+            String id = Long.toString(now);
+            for (int i = 1; new File(filesDirectory, id).exists()
+                    || new File(infoDirectory, id + INFO_SUFFIX).exists(); i++) {
+                id = now + "-" + i;
+            }
+
+            // The info file goes first: a crash before the rename leaves only an orphan the purge removes
+            String originalPath = file.getAbsolutePath();
+            File infoFile = new File(infoDirectory, id + INFO_SUFFIX);
+            writeInfo(infoFile, originalPath, now, -1);
+            if (!file.renameTo(new File(filesDirectory, id))) {
+                infoFile.delete();
+                throw new IOException("Failed to move to trash");
+            }
+            return new Item(volumeRoot, id, originalPath, now, -1);
+        }
+    }
+
+    /** Lists the trash of every volume, most recently deleted first. */
+    public List<Item> listItems() {
+        List<Item> items = new ArrayList<>();
+        synchronized (LOCK) {
+            for (File root : volumeRoots) {
+                items.addAll(readItems(root));
+            }
+        }
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item item1, Item item2) {
+                return Long.compare(item2.deletedAt, item1.deletedAt);
+            }
+        });
+        return items;
+    }
+
+    public void restore(Item item) throws IOException {
+        synchronized (LOCK) {
+            File trashedFile = trashedFile(item);
+            if (!trashedFile.exists()) {
+                throw new IOException("No longer in the trash");
+            }
+            File target = new File(item.originalPath);
+            if (target.exists()) {
+                throw new IOException("A file with that name already exists");
+            }
+            File parent = target.getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            if (!trashedFile.renameTo(target)) {
+                throw new IOException("Failed to restore " + item.getName());
+            }
+            infoFile(item).delete();
+        }
+    }
+
+    /** Deletes an item for good. Recursive, so call it off the main thread. */
+    public void delete(Item item) {
+        File detached = detach(item);
+        if (detached != null) {
+            FileUtils.deleteRecursive(detached);
+        }
+    }
+
+    /** Deletes everything in every trash. Recursive, so call it off the main thread. */
+    public void empty() {
+        for (Item item : listItems()) {
+            detach(item);
+        }
+        for (File root : volumeRoots) {
+            deletePurged(root);
+        }
+    }
+
+    /** Evicts expired items and keeps each trash within its size budget. Meant for a background thread. */
+    public void purge(long now) {
+        for (File root : volumeRoots) {
+            if (new File(root, TRASH_DIRECTORY_NAME).isDirectory()) {
+                purge(root, now, MAX_AGE_MILLIS, root.getTotalSpace() / 100 * MAX_SIZE_PERCENT);
+            }
+        }
+    }
+
+    void purge(File volumeRoot, long now, long maxAgeMillis, long maxBytes) {
+        List<Item> items;
+        synchronized (LOCK) {
+            items = readItems(volumeRoot);
+            removeOrphans(volumeRoot);
+        }
+
+        // Sizes are measured once, outside the lock, and remembered in the info file
+        long totalBytes = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            if (item.size < 0) {
+                long size = FileUtils.sizeOf(trashedFile(item));
+                synchronized (LOCK) {
+                    File infoFile = infoFile(item);
+                    if (infoFile.exists()) {
+                        try {
+                            writeInfo(infoFile, item.originalPath, item.deletedAt, size);
+                        } catch (IOException ignored) {
+                            // Measured again on the next purge
+                        }
+                    }
+                }
+                item = new Item(volumeRoot, item.id, item.originalPath, item.deletedAt, size);
+                items.set(i, item);
+            }
+            totalBytes += item.size;
+        }
+
+        Collections.sort(items, new Comparator<Item>() {
+            @Override
+            public int compare(Item item1, Item item2) {
+                int result = Long.compare(item1.deletedAt, item2.deletedAt);
+                // Ids only share a timestamp when several items were trashed in the same millisecond
+                return result != 0 ? result : item1.id.compareTo(item2.id);
+            }
+        });
+
+        // Oldest first, so once an item is young enough and the trash fits, the rest stay too
+        for (Item item : items) {
+            boolean expired = now - item.deletedAt > maxAgeMillis;
+            if (!expired && totalBytes <= maxBytes) {
+                break;
+            }
+            if (detach(item) != null) {
+                totalBytes -= item.size;
+            }
+        }
+
+        deletePurged(volumeRoot);
+    }
+
+    // Moves an item out of the listing so the slow delete can happen without holding the lock
+    private File detach(Item item) {
+        synchronized (LOCK) {
+            File trashedFile = trashedFile(item);
+            infoFile(item).delete();
+            if (!trashedFile.exists()) {
+                return null;
+            }
+            File purgeDirectory = new File(new File(item.volumeRoot, TRASH_DIRECTORY_NAME), PURGE_DIRECTORY);
+            purgeDirectory.mkdirs();
+            File detached = new File(purgeDirectory, item.id);
+            return trashedFile.renameTo(detached) ? detached : null;
+        }
+    }
+
+    // Also clears anything left behind by a purge that was interrupted
+    private static void deletePurged(File volumeRoot) {
+        File purgeDirectory = new File(new File(volumeRoot, TRASH_DIRECTORY_NAME), PURGE_DIRECTORY);
+        File[] purged = purgeDirectory.listFiles();
+        if (purged != null) {
+            for (File file : purged) {
+                FileUtils.deleteRecursive(file);
+            }
+        }
+    }
+
+    // Caller must hold the lock
+    private static void removeOrphans(File volumeRoot) {
+        File trashDirectory = new File(volumeRoot, TRASH_DIRECTORY_NAME);
+        File filesDirectory = new File(trashDirectory, FILES_DIRECTORY);
+        File infoDirectory = new File(trashDirectory, INFO_DIRECTORY);
+
+        File[] infoFiles = infoDirectory.listFiles();
+        if (infoFiles != null) {
+            for (File infoFile : infoFiles) {
+                String name = infoFile.getName();
+                if (!name.endsWith(INFO_SUFFIX)
+                        || !new File(filesDirectory, name.substring(0, name.length() - INFO_SUFFIX.length())).exists()) {
+                    infoFile.delete();
+                }
+            }
+        }
+
+        // Without an info file an item cannot be restored, so it only takes up space
+        File[] trashedFiles = filesDirectory.listFiles();
+        if (trashedFiles != null) {
+            File purgeDirectory = new File(trashDirectory, PURGE_DIRECTORY);
+            for (File trashedFile : trashedFiles) {
+                if (!new File(infoDirectory, trashedFile.getName() + INFO_SUFFIX).exists()) {
+                    purgeDirectory.mkdirs();
+                    trashedFile.renameTo(new File(purgeDirectory, trashedFile.getName()));
+                }
+            }
+        }
+    }
+
+    // Caller must hold the lock
+    private static List<Item> readItems(File volumeRoot) {
+        List<Item> items = new ArrayList<>();
+        File trashDirectory = new File(volumeRoot, TRASH_DIRECTORY_NAME);
+        File[] infoFiles = new File(trashDirectory, INFO_DIRECTORY).listFiles();
+        if (infoFiles == null) {
+            return items;
+        }
+
+        File filesDirectory = new File(trashDirectory, FILES_DIRECTORY);
+        for (File infoFile : infoFiles) {
+            String name = infoFile.getName();
+            if (!name.endsWith(INFO_SUFFIX)) {
+                continue;
+            }
+            String id = name.substring(0, name.length() - INFO_SUFFIX.length());
+            if (!new File(filesDirectory, id).exists()) {
+                continue;
+            }
+
+            Properties info = new Properties();
+            InputStream in = null;
+            try {
+                in = new FileInputStream(infoFile);
+                info.load(in);
+                String originalPath = info.getProperty(KEY_PATH);
+                if (originalPath != null) {
+                    items.add(new Item(volumeRoot, id, originalPath,
+                            Long.parseLong(info.getProperty(KEY_DELETED, "0")),
+                            Long.parseLong(info.getProperty(KEY_SIZE, "-1"))));
+                }
+            } catch (IOException | NumberFormatException ignored) {
+                // Skip entries whose info file is damaged
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    private static void writeInfo(File infoFile, String originalPath, long deletedAt, long size) throws IOException {
+        Properties info = new Properties();
+        info.setProperty(KEY_PATH, originalPath);
+        info.setProperty(KEY_DELETED, Long.toString(deletedAt));
+        if (size >= 0) {
+            info.setProperty(KEY_SIZE, Long.toString(size));
+        }
+
+        OutputStream out = new FileOutputStream(infoFile);
+        try {
+            info.store(out, null);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static File trashedFile(Item item) {
+        return new File(new File(new File(item.volumeRoot, TRASH_DIRECTORY_NAME), FILES_DIRECTORY), item.id);
+    }
+
+    private static File infoFile(Item item) {
+        return new File(new File(new File(item.volumeRoot, TRASH_DIRECTORY_NAME), INFO_DIRECTORY), item.id + INFO_SUFFIX);
+    }
+}
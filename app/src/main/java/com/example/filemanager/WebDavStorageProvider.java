@@ -0,0 +1,433 @@
+package com.example.filemanager;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Credentials;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * WebDAV backend. A directory listing is a single PROPFIND with Depth 1, which returns the
+ * metadata of every child in one response. Individual stats are sent concurrently over a
+ * shared connection pool (multiplexed on HTTP/2) instead of one after another.
+ */
+public class WebDavStorageProvider extends RemoteStorageProvider {
+
+    private static final String DAV_NAMESPACE = "DAV:";
+    private static final MediaType XML = MediaType.get("application/xml; charset=utf-8");
+    private static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+    private static final String PROPFIND_BODY = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<d:propfind xmlns:d=\"DAV:\"><d:prop>"
+            + "<d:resourcetype/><d:getcontentlength/><d:getlastmodified/>"
+            + "</d:prop></d:propfind>";
+
+    private static final int MAX_REQUESTS_IN_FLIGHT = 16;
+    private static final long STAT_BATCH_TIMEOUT_SECONDS = 60;
+
+    private final HttpUrl baseUrl;
+    private final OkHttpClient client;
+    private final File tempDirectory;
+
+    public WebDavStorageProvider(HttpUrl baseUrl, String username, String password, File tempDirectory) {
+        this.baseUrl = baseUrl.encodedPath().endsWith("/")
+                ? baseUrl : baseUrl.newBuilder().addPathSegment("").build();
+        this.tempDirectory = tempDirectory;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_IN_FLIGHT);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(MAX_REQUESTS_IN_FLIGHT, 5, TimeUnit.MINUTES));
+
+        if (username != null && !username.isEmpty()) {
+            final String credentials = Credentials.basic(username, password != null ? password : "");
+            builder.addInterceptor(new Interceptor() {
+                @Override
+                public Response intercept(Chain chain) throws IOException {
+                    return chain.proceed(chain.request().newBuilder()
+                            .header("Authorization", credentials)
+                            .build());
+                }
+            });
+        }
+
+        client = builder.build();
+    }
+
+    @Override
+    protected List<StorageEntry> fetchList(String path) throws IOException {
+        Response response = client.newCall(propfind(path, true, "1")).execute();
+        try {
+            if (response.code() == 404) {
+                throw new FileNotFoundException(path);
+            }
+            List<StorageEntry> entries = parseMultistatus(response);
+
+            // The response includes the directory itself
+            Iterator<StorageEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().getPath().equals(path)) {
+                    iterator.remove();
+                }
+            }
+            return entries;
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    protected StorageEntry fetchStat(String path) throws IOException {
+        Response response = client.newCall(propfind(path, false, "0")).execute();
+        try {
+            return parseStatResponse(path, response);
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    protected List<StorageEntry> fetchStats(final List<String> paths) throws IOException {
+        final StorageEntry[] results = new StorageEntry[paths.size()];
+        final IOException[] failure = new IOException[1];
+        final CountDownLatch remaining = new CountDownLatch(paths.size());
+        List<Call> calls = new ArrayList<>(paths.size());
+
+        // Queue every request up front; the dispatcher keeps MAX_REQUESTS_IN_FLIGHT of them running
+        for (int i = 0; i < paths.size(); i++) {
+            final int index = i;
+            Call call = client.newCall(propfind(paths.get(i), false, "0"));
+            calls.add(call);
+            call.enqueue(new Callback() {
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try {
+                        results[index] = parseStatResponse(paths.get(index), response);
+                    } catch (IOException e) {
+                        recordFailure(e);
+                    } finally {
+                        response.close();
+                        remaining.countDown();
+                    }
+                }
+
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    recordFailure(e);
+                    remaining.countDown();
+                }
+
+                private void recordFailure(IOException e) {
+                    synchronized (failure) {
+                        if (failure[0] == null) {
+                            failure[0] = e;
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            if (!remaining.await(STAT_BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("Timed out waiting for metadata");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for metadata");
+        } finally {
+            for (Call call : calls) {
+                call.cancel();
+            }
+        }
+
+        synchronized (failure) {
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public InputStream openRead(String path) throws IOException {
+        Request request = new Request.Builder().url(urlFor(path, false)).get().build();
+        Response response = client.newCall(request).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            if (response.code() == 404) {
+                throw new FileNotFoundException(path);
+            }
+            throw new IOException("GET " + path + " failed: HTTP " + response.code());
+        }
+        return response.body().byteStream();
+    }
+
+    // Uploads need the full body up front, so writes are spooled to a temp file and sent on close
+    @Override
+    protected OutputStream fetchWrite(final String path) throws IOException {
+        final File spoolFile = File.createTempFile("webdav", ".upload", tempDirectory);
+        return new FilterOutputStream(new FileOutputStream(spoolFile)) {
+            private boolean closed;
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    super.close();
+                    Request request = new Request.Builder()
+                            .url(urlFor(path, false))
+                            .put(RequestBody.create(spoolFile, OCTET_STREAM))
+                            .build();
+                    Response response = client.newCall(request).execute();
+                    try {
+                        if (!response.isSuccessful()) {
+                            throw new IOException("PUT " + path + " failed: HTTP " + response.code());
+                        }
+                    } finally {
+                        response.close();
+                    }
+                } finally {
+                    spoolFile.delete();
+                }
+            }
+        };
+    }
+
+    @Override
+    protected void performRename(String fromPath, String toPath) throws IOException {
+        Request request = new Request.Builder()
+                .url(urlFor(fromPath, false))
+                .method("MOVE", null)
+                .header("Destination", urlFor(toPath, false).toString())
+                .header("Overwrite", "F")
+                .build();
+        Response response = client.newCall(request).execute();
+        try {
+            if (response.code() == 412) {
+                throw new IOException("A file with that name already exists");
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("MOVE " + fromPath + " failed: HTTP " + response.code());
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    protected void performDelete(String path) throws IOException {
+        Request request = new Request.Builder().url(urlFor(path, false)).delete().build();
+        Response response = client.newCall(request).execute();
+        try {
+            if (response.code() == 404) {
+                throw new FileNotFoundException(path);
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("DELETE " + path + " failed: HTTP " + response.code());
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    private Request propfind(String path, boolean directory, String depth) {
+        return new Request.Builder()
+                .url(urlFor(path, directory))
+                .method("PROPFIND", RequestBody.create(PROPFIND_BODY, XML))
+                .header("Depth", depth)
+                .build();
+    }
+
+    private HttpUrl urlFor(String path, boolean directory) {
+        HttpUrl.Builder builder = baseUrl.newBuilder();
+        for (String segment : StorageEntry.normalize(path).split("/")) {
+            if (!segment.isEmpty()) {
+                builder.addPathSegment(segment);
+            }
+        }
+        if (directory) {
+            builder.addPathSegment("");
+        }
+        return builder.build();
+    }
+
+    // Maps an href from a multistatus response back to a provider path relative to the base URL
+    private String pathForHref(String href) throws IOException {
+        HttpUrl url = baseUrl.resolve(href.trim());
+        if (url == null) {
+            throw new IOException("Invalid href: " + href);
+        }
+
+        List<String> baseSegments = nonEmpty(baseUrl.pathSegments());
+        List<String> segments = nonEmpty(url.pathSegments());
+        if (segments.size() < baseSegments.size() || !segments.subList(0, baseSegments.size()).equals(baseSegments)) {
+            throw new IOException("href outside of base URL: " + href);
+        }
+
+        StringBuilder path = new StringBuilder();
+        for (String segment : segments.subList(baseSegments.size(), segments.size())) {
+            path.append('/').append(segment);
+        }
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    // Picks the entry for the requested path; a response that does not describe it counts as missing
+    private StorageEntry parseStatResponse(String path, Response response) throws IOException {
+        if (response.code() == 404) {
+            return null;
+        }
+        String normalizedPath = StorageEntry.normalize(path);
+        for (StorageEntry entry : parseMultistatus(response)) {
+            if (entry.getPath().equals(normalizedPath)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private List<StorageEntry> parseMultistatus(Response response) throws IOException {
+        if (response.code() != 207) {
+            throw new IOException("PROPFIND failed: HTTP " + response.code());
+        }
+
+        Document document;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setExpandEntityReferences(false);
+            try {
+                factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            } catch (ParserConfigurationException e) {
+                // Not supported by every platform parser; those do not resolve external entities anyway
+            }
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            document = builder.parse(response.body().byteStream());
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("Invalid PROPFIND response: " + e.getMessage());
+        }
+
+        List<StorageEntry> entries = new ArrayList<>();
+        NodeList responses = document.getElementsByTagNameNS(DAV_NAMESPACE, "response");
+        for (int i = 0; i < responses.getLength(); i++) {
+            Element element = (Element) responses.item(i);
+            String href = childText(element, "href");
+            if (href == null) {
+                continue;
+            }
+
+            boolean directory = false;
+            long length = 0;
+            long lastModified = 0;
+            boolean found = false;
+
+            NodeList propstats = element.getElementsByTagNameNS(DAV_NAMESPACE, "propstat");
+            for (int j = 0; j < propstats.getLength(); j++) {
+                Element propstat = (Element) propstats.item(j);
+                String status = childText(propstat, "status");
+                if (status == null || !status.contains(" 200 ")) {
+                    continue;
+                }
+                found = true;
+
+                if (propstat.getElementsByTagNameNS(DAV_NAMESPACE, "collection").getLength() > 0) {
+                    directory = true;
+                }
+                String contentLength = childText(propstat, "getcontentlength");
+                if (contentLength != null) {
+                    try {
+                        length = Long.parseLong(contentLength.trim());
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                String modified = childText(propstat, "getlastmodified");
+                if (modified != null) {
+                    lastModified = parseHttpDate(modified.trim());
+                }
+            }
+
+            if (found) {
+                entries.add(new StorageEntry(pathForHref(href), directory, directory ? 0 : length, lastModified));
+            }
+        }
+        return entries;
+    }
+
+    private static String childText(Element parent, String localName) {
+        NodeList nodes = parent.getElementsByTagNameNS(DAV_NAMESPACE, localName);
+        if (nodes.getLength() == 0) {
+            return null;
+        }
+        Node node = nodes.item(0);
+        return node.getTextContent();
+    }
+
+    private static List<String> nonEmpty(List<String> segments) {
+        List<String> result = new ArrayList<>(segments.size());
+        for (String segment : segments) {
+            if (!segment.isEmpty()) {
+                result.add(segment);
+            }
+        }
+        return result;
+    }
+
+    private static long parseHttpDate(String value) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.filemanager;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DirectoryFilterTest {
+
+    private final DirectoryFilter filter = new DirectoryFilter();
+
+    @After
+    public void tearDown() {
+        filter.shutdown();
+    }
+
+    @Test
+    public void normalize_foldsCaseAndAccents() {
+        assertEquals("cafe creme.txt", DirectoryFilter.normalize("Café Crème.TXT"));
+        assertEquals("readme.md", DirectoryFilter.normalize("README.md"));
+    }
+
+    @Test
+    public void filter_matchesSubstringsOfNormalizedNames() throws Exception {
+        filter.setSource(files("Photos", "résumé.pdf", "Resume_old.docx", "notes.txt"));
+
+        assertEquals(names("résumé.pdf", "Resume_old.docx"), filterNow("RESUME"));
+        assertEquals(names("notes.txt"), filterNow("note"));
+        assertEquals(names(), filterNow("xyz"));
+    }
+
+    @Test
+    public void filter_refinesPreviousResultsWhenQueryGrows() throws Exception {
+        List<File> source = new ArrayList<>();
+        for (int i = 0; i < 50000; i++) {
+            source.add(new File("/sdcard", "IMG_" + i + ".jpg"));
+        }
+        filter.setSource(source);
+
+        assertEquals(11111, filterNow("img_1").size());
+        assertEquals(1111, filterNow("img_12").size());
+        assertEquals(names("IMG_12345.jpg"), filterNow("img_12345"));
+        // Shrinking the query falls back to a full scan
+        assertEquals(11111, filterNow("img_1").size());
+    }
+
+    @Test
+    public void filter_deliversOnlyTheLatestQuery() throws Exception {
+        filter.setSource(files("alpha", "alphabet", "beta"));
+
+        final List<String> delivered = new ArrayList<>();
+        final CountDownLatch latest = new CountDownLatch(1);
+        DirectoryFilter.Callback callback = new DirectoryFilter.Callback() {
+            @Override
+            public void onFilterResult(String query, List<File> matches) {
+                synchronized (delivered) {
+                    delivered.add(query);
+                }
+                if (query.equals("alphab")) {
+                    latest.countDown();
+                }
+            }
+        };
+
+        filter.filter("a", callback);
+        filter.filter("al", callback);
+        filter.filter("alphab", callback);
+        assertTrue(latest.await(5, TimeUnit.SECONDS));
+
+        synchronized (delivered) {
+            assertEquals("alphab", delivered.get(delivered.size() - 1));
+        }
+    }
+
+    @Test
+    public void setSource_invalidatesRefinement() throws Exception {
+        filter.setSource(files("one", "two"));
+        assertEquals(names("one"), filterNow("on"));
+
+        filter.setSource(files("none", "onerous"));
+        assertEquals(names("none", "onerous"), filterNow("one"));
+    }
+
+    private List<String> filterNow(String query) throws InterruptedException {
+        final List<String> result = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        filter.filter(query, new DirectoryFilter.Callback() {
+            @Override
+            public void onFilterResult(String query, List<File> matches) {
+                for (File file : matches) {
+                    result.add(file.getName());
+                }
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private static List<File> files(String... names) {
+        List<File> files = new ArrayList<>();
+        for (String name : names) {
+            files.add(new File("/sdcard", name));
+        }
+        return files;
+    }
+
+    private static List<String> names(String... names) {
+        return Arrays.asList(names);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.filemanager;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DirectorySnapshotTest {
+
+    @Test
+    public void writeThenRead_restoresListingAndScroll() throws IOException {
+        File directory = new File("/storage/emulated/0/DCIM");
+        List<File> files = Arrays.asList(
+                directory.getParentFile(),
+                new File(directory, "Camera"),
+                new File(directory, "IMG_20240101_000001.jpg"),
+                new File(directory, "IMG_20240101_000002.jpg"),
+                new File(directory, "ünïcødé.png"));
+
+        File snapshotFile = File.createTempFile("snapshot", ".bin");
+        snapshotFile.deleteOnExit();
+        Map<String, StorageEntry> entries = new HashMap<>();
+        StorageEntry camera = new StorageEntry(files.get(1).getAbsolutePath(), true, 4096, 111L);
+        StorageEntry image = new StorageEntry(files.get(2).getAbsolutePath(), false, 2500000, 222L);
+        entries.put(camera.getPath(), camera);
+        entries.put(image.getPath(), image);
+        Map<String, Integer> itemCounts = new HashMap<>();
+        itemCounts.put(camera.getPath(), 42);
+        DirectorySnapshot.fromFileList(directory, 1234L, files, entries, itemCounts, 3, -17).write(snapshotFile);
+
+        DirectorySnapshot restored = DirectorySnapshot.read(snapshotFile);
+        assertNotNull(restored);
+        assertEquals(directory.getAbsolutePath(), restored.getDirectoryPath());
+        assertEquals(1234L, restored.getDirectoryModified());
+        assertEquals(3, restored.getScrollPosition());
+        assertEquals(-17, restored.getScrollOffset());
+        assertEquals(files, restored.toFileList());
+
+        // Rows restored from the snapshot bind from this metadata instead of the file system
+        Map<String, StorageEntry> restoredEntries = restored.toEntries();
+        assertEquals(2, restoredEntries.size());
+        StorageEntry restoredCamera = restoredEntries.get(camera.getPath());
+        assertTrue(restoredCamera.isDirectory());
+        assertEquals(111L, restoredCamera.getLastModified());
+        StorageEntry restoredImage = restoredEntries.get(image.getPath());
+        assertFalse(restoredImage.isDirectory());
+        assertEquals(2500000, restoredImage.getLength());
+        assertEquals(222L, restoredImage.getLastModified());
+        assertEquals(itemCounts, restored.toItemCounts());
+    }
+
+    @Test
+    public void read_rejectsMissingAndForeignFiles() throws IOException {
+        File missing = new File(System.getProperty("java.io.tmpdir"), "no-such-snapshot.bin");
+        assertNull(DirectorySnapshot.read(missing));
+
+        File garbage = File.createTempFile("snapshot", ".bin");
+        garbage.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(garbage);
+        out.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        out.close();
+        assertNull(DirectorySnapshot.read(garbage));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.filemanager;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LargeTextFileTest {
+
+    private static final int LINES = 5000;
+
+    @Test
+    public void index_countsAllLinesIncludingUnterminatedLast() throws IOException {
+        LargeTextFile textFile = new LargeTextFile(writeLog(true));
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            assertTrue(textFile.isIndexComplete());
+            assertEquals(LINES + 1, textFile.getLineCount());
+            assertEquals("tail without newline", textFile.readLine(LINES));
+            assertNull(textFile.readLine(LINES + 1));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    @Test
+    public void readLine_supportsRandomAndSequentialAccess() throws IOException {
+        LargeTextFile textFile = new LargeTextFile(writeLog(false));
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            assertEquals(LINES, textFile.getLineCount());
+
+            assertEquals("line 4097 INFO ok", textFile.readLine(4097));
+            assertEquals("line 0 INFO ok", textFile.readLine(0));
+            for (int i = 1020; i < 1030; i++) {
+                assertTrue(textFile.readLine(i).startsWith("line " + i + " "));
+            }
+            // Carriage returns from CRLF lines are stripped
+            assertEquals("line 3000 ERROR disk full", textFile.readLine(3000));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    @Test
+    public void readLine_truncatesVeryLongLines() throws IOException {
+        File file = File.createTempFile("long", ".log");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        for (int i = 0; i < LargeTextFile.MAX_LINE_BYTES * 3; i++) {
+            writer.write('x');
+        }
+        writer.write("\nshort\n");
+        writer.close();
+
+        LargeTextFile textFile = new LargeTextFile(file);
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            assertEquals(LargeTextFile.MAX_LINE_BYTES, textFile.readLine(0).length());
+            assertEquals("short", textFile.readLine(1));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    @Test
+    public void index_boundsCheckpointSpacingForLongLines() throws IOException {
+        File file = File.createTempFile("wide", ".log");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            padding.append('x');
+        }
+        for (int i = 0; i < 200; i++) {
+            writer.write("line " + i + " " + padding + "\n");
+        }
+        writer.close();
+
+        LargeTextFile textFile = new LargeTextFile(file);
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            // Far fewer lines than INDEX_INTERVAL, yet checkpoints are at most INDEX_MAX_BYTES
+            // plus one line apart
+            assertTrue(textFile.getCheckpointCount() > file.length() / (2 * LargeTextFile.INDEX_MAX_BYTES));
+
+            for (int i = 199; i >= 0; i -= 7) {
+                assertTrue(textFile.readLine(i).startsWith("line " + i + " "));
+            }
+            assertTrue(textFile.readLine(150).startsWith("line 150 "));
+            assertTrue(textFile.readLine(151).startsWith("line 151 "));
+            assertEquals(123, textFile.findNext("LINE 123 ", 100, new AtomicBoolean()));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    @Test
+    public void findNext_returnsMatchingLineIgnoringCase() throws IOException {
+        LargeTextFile textFile = new LargeTextFile(writeLog(false));
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            assertEquals(3000, textFile.findNext("error DISK", 0, new AtomicBoolean()));
+            assertEquals(-1, textFile.findNext("error disk", 3001, new AtomicBoolean()));
+            assertEquals(4999, textFile.findNext("line 4999", 10, new AtomicBoolean()));
+            assertEquals(-1, textFile.findNext("no such text", 0, new AtomicBoolean()));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    @Test
+    public void findNext_foldsOnlyAsciiCaseOnBothSides() throws IOException {
+        File file = File.createTempFile("accents", ".txt");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        writer.write("première ligne\nRentrée à l'École\n");
+        writer.close();
+
+        LargeTextFile textFile = new LargeTextFile(file);
+        try {
+            textFile.buildIndex(new AtomicBoolean());
+            assertEquals(1, textFile.findNext("ÉCOLE", 0, new AtomicBoolean()));
+            // Only ASCII letters are folded, so a differently cased accent does not match
+            assertEquals(-1, textFile.findNext("école", 0, new AtomicBoolean()));
+        } finally {
+            textFile.close();
+        }
+    }
+
+    private static File writeLog(boolean unterminatedTail) throws IOException {
+        File file = File.createTempFile("viewer", ".log");
+        file.deleteOnExit();
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        for (int i = 0; i < LINES; i++) {
+            if (i == 3000) {
+                writer.write("line " + i + " ERROR disk full\r\n");
+            } else {
+                writer.write("line " + i + " INFO ok\n");
+            }
+        }
+        if (unterminatedTail) {
+            writer.write("tail without newline");
+        }
+        writer.close();
+        return file;
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.filemanager;
+
+import org.apache.sshd.common.file.virtualfs.VirtualFileSystemFactory;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.auth.password.PasswordAuthenticator;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.apache.sshd.server.session.ServerSession;
+import org.apache.sshd.sftp.server.SftpEventListener;
+import org.apache.sshd.sftp.server.SftpSubsystemFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SftpStorageProviderTest {
+
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "secret";
+    private static final int SSH_FXP_STAT = 17;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File serverRoot;
+    private File knownHosts;
+    private SshServer server;
+    private SftpStorageProvider provider;
+
+    private final AtomicInteger statsInFlight = new AtomicInteger();
+    private final AtomicInteger maxStatsInFlight = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        serverRoot = temporaryFolder.newFolder("root");
+        knownHosts = new File(temporaryFolder.getRoot(), "known_hosts");
+        server = startServer(0, "host_key_1");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (provider != null) {
+            provider.close();
+        }
+        server.stop(true);
+    }
+
+    @Test
+    public void connect_trustsNewHostAndRejectsAChangedKey() throws IOException {
+        writeFile(new File(serverRoot, "a.txt"), 10);
+        provider = newProvider();
+        assertEquals(1, provider.list("/").size());
+        provider.close();
+        byte[] trusted = readFully(knownHosts);
+        assertTrue(trusted.length > 0);
+
+        // Same host and port, different key: what a man-in-the-middle would present
+        int port = server.getPort();
+        server.stop(true);
+        server = startServer(port, "host_key_2");
+
+        provider = newProvider();
+        try {
+            provider.list("/");
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+        assertTrue(Arrays.equals(trusted, readFully(knownHosts)));
+    }
+
+    @Test
+    public void statAll_keepsSeveralStatsInFlight() throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            // One file per directory, so no parent is worth listing instead
+            writeFile(new File(serverRoot, "dir" + i + "/file.bin"), i);
+            paths.add("/dir" + i + "/file.bin");
+        }
+        paths.add("/missing/file.bin");
+        paths.add("/");
+
+        provider = newProvider();
+        List<StorageEntry> entries = provider.statAll(paths);
+
+        assertEquals(paths.size(), entries.size());
+        for (int i = 0; i < 12; i++) {
+            assertEquals(paths.get(i), entries.get(i).getPath());
+            assertEquals(i, entries.get(i).getLength());
+            assertFalse(entries.get(i).isDirectory());
+        }
+        assertNull(entries.get(12));
+        assertTrue(entries.get(13).isDirectory());
+        assertTrue(maxStatsInFlight.get() > 1);
+        assertTrue(maxStatsInFlight.get() <= SftpStorageProvider.STAT_CHANNELS);
+    }
+
+    @Test
+    public void list_showsWhatSymbolicLinksPointTo() throws IOException {
+        writeFile(new File(serverRoot, "target/a.txt"), 10);
+        Files.createSymbolicLink(new File(serverRoot, "to_directory").toPath(), Paths.get("target"));
+        Files.createSymbolicLink(new File(serverRoot, "to_file").toPath(), Paths.get("target/a.txt"));
+        Files.createSymbolicLink(new File(serverRoot, "dangling").toPath(), Paths.get("missing"));
+
+        provider = newProvider();
+        Map<String, StorageEntry> entries = new HashMap<>();
+        for (StorageEntry entry : provider.list("/")) {
+            entries.put(entry.getName(), entry);
+        }
+
+        assertEquals(4, entries.size());
+        assertTrue(entries.get("to_directory").isDirectory());
+        assertEquals(10, entries.get("to_file").getLength());
+        assertFalse(entries.get("dangling").isDirectory());
+    }
+
+    private SftpStorageProvider newProvider() {
+        return new SftpStorageProvider("localhost", server.getPort(), USERNAME, PASSWORD, "/", knownHosts);
+    }
+
+    private SshServer startServer(int port, String hostKeyName) throws IOException {
+        SshServer sshServer = SshServer.setUpDefaultServer();
+        sshServer.setHost("localhost");
+        sshServer.setPort(port);
+        sshServer.setKeyPairProvider(new SimpleGeneratorHostKeyProvider(
+                new File(temporaryFolder.getRoot(), hostKeyName).toPath()));
+        sshServer.setPasswordAuthenticator(new PasswordAuthenticator() {
+            @Override
+            public boolean authenticate(String username, String password, ServerSession session) {
+                return USERNAME.equals(username) && PASSWORD.equals(password);
+            }
+        });
+        SftpSubsystemFactory sftpFactory = new SftpSubsystemFactory();
+        // Holds every stat for a moment and records how many are being served at once
+        sftpFactory.addSftpEventListener(new SftpEventListener() {
+            @Override
+            public void received(ServerSession session, int type, int id) {
+                if (type != SSH_FXP_STAT) {
+                    return;
+                }
+                int inFlight = statsInFlight.incrementAndGet();
+                try {
+                    synchronized (maxStatsInFlight) {
+                        maxStatsInFlight.set(Math.max(maxStatsInFlight.get(), inFlight));
+                    }
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    statsInFlight.decrementAndGet();
+                }
+            }
+        });
+        sshServer.setSubsystemFactories(Collections.singletonList(sftpFactory));
+        sshServer.setFileSystemFactory(new VirtualFileSystemFactory(serverRoot.toPath()));
+        sshServer.start();
+        return sshServer;
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                read += in.read(data, read, data.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
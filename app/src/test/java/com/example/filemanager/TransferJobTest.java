@@ -0,0 +1,293 @@
+package com.example.filemanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TransferJobTest {
+
+    private static final int LARGE_SIZE = (int) (TransferJob.CHECKPOINT_BYTES * 3 + 12345);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File journals;
+    private File source;
+    private File destination;
+
+    @Before
+    public void setUp() throws IOException {
+        journals = temporaryFolder.newFolder("journals");
+        source = temporaryFolder.newFolder("source");
+        destination = new File(temporaryFolder.getRoot(), "destination");
+
+        writeRandom(new File(source, "a.txt"), 100, 1);
+        writeRandom(new File(source, "nested/large.bin"), LARGE_SIZE, 2);
+        new File(source, "empty").mkdirs();
+    }
+
+    @Test
+    public void run_copiesTreeAndRemovesJournal() throws IOException {
+        TransferJob job = TransferJob.create(journals, TransferJournal.TYPE_COPY, source, destination);
+        assertTrue(job.run(new AtomicBoolean(), null));
+
+        assertSameContents(new File(source, "a.txt"), new File(destination, "a.txt"));
+        assertSameContents(new File(source, "nested/large.bin"), new File(destination, "nested/large.bin"));
+        assertTrue(new File(destination, "empty").isDirectory());
+        assertEquals(0, journals.list().length);
+    }
+
+    @Test
+    public void resume_continuesPartialFileFromItsCheckpoint() throws IOException {
+        interruptAfter(TransferJob.CHECKPOINT_BYTES * 2);
+
+        List<TransferJob> unfinished = TransferJob.findUnfinished(journals);
+        assertEquals(1, unfinished.size());
+        TransferJob job = unfinished.get(0);
+        assertTrue(job.getCompletedBytes() >= TransferJob.CHECKPOINT_BYTES);
+        assertTrue(job.getCompletedBytes() < LARGE_SIZE);
+
+        // Mark the part already on disk; a resume that starts over would overwrite it
+        File partial = new File(destination, "nested/large.bin");
+        byte marker = (byte) ~readByte(new File(source, "nested/large.bin"), 0);
+        writeByte(partial, 0, marker);
+
+        assertTrue(job.run(new AtomicBoolean(), null));
+        assertEquals(LARGE_SIZE, partial.length());
+        assertEquals(marker, readByte(partial, 0));
+        assertEquals(readByte(new File(source, "nested/large.bin"), LARGE_SIZE - 1), readByte(partial, LARGE_SIZE - 1));
+        assertTrue(TransferJob.findUnfinished(journals).isEmpty());
+    }
+
+    @Test
+    public void resume_afterACrashRewritesEverythingPastTheLastCheckpoint() throws IOException {
+        crashAfter(TransferJob.CHECKPOINT_BYTES + 2 * 1024 * 1024);
+
+        // No checkpoint at the crash itself: the journal only knows the last periodic one
+        TransferJob job = TransferJob.findUnfinished(journals).get(0);
+        assertEquals(100 + TransferJob.CHECKPOINT_BYTES, job.getCompletedBytes());
+
+        // Mark bytes on both sides of the checkpoint; only the ones past it are written again
+        File original = new File(source, "nested/large.bin");
+        File partial = new File(destination, "nested/large.bin");
+        long beforeCheckpoint = TransferJob.CHECKPOINT_BYTES - 1;
+        long afterCheckpoint = TransferJob.CHECKPOINT_BYTES + 1024;
+        byte marker = (byte) ~readByte(original, beforeCheckpoint);
+        writeByte(partial, beforeCheckpoint, marker);
+        writeByte(partial, afterCheckpoint, (byte) ~readByte(original, afterCheckpoint));
+
+        assertTrue(job.run(new AtomicBoolean(), null));
+        assertEquals(LARGE_SIZE, partial.length());
+        assertEquals(marker, readByte(partial, beforeCheckpoint));
+        assertEquals(readByte(original, afterCheckpoint), readByte(partial, afterCheckpoint));
+        assertEquals(readByte(original, LARGE_SIZE - 1), readByte(partial, LARGE_SIZE - 1));
+    }
+
+    @Test
+    public void resume_skipsVerifiedFilesAndRecopiesChangedSources() throws IOException {
+        interruptAfter(TransferJob.CHECKPOINT_BYTES);
+        File copied = new File(destination, "a.txt");
+        assertEquals(100, copied.length());
+
+        // Same size and unchanged source: trusted as complete and left alone
+        writeByte(copied, 0, (byte) ~readByte(copied, 0));
+        byte edited = readByte(copied, 0);
+
+        TransferJob job = TransferJob.findUnfinished(journals).get(0);
+        assertTrue(job.run(new AtomicBoolean(), null));
+        assertEquals(edited, readByte(copied, 0));
+
+        // A source that changed after its copy finished is copied again
+        interruptAfter(TransferJob.CHECKPOINT_BYTES);
+        writeRandom(new File(source, "a.txt"), 200, 3);
+        assertTrue(TransferJob.findUnfinished(journals).get(0).run(new AtomicBoolean(), null));
+        assertSameContents(new File(source, "a.txt"), copied);
+    }
+
+    @Test
+    public void read_ignoresTornTailAndAppendsAfterTheLastValidRecord() throws IOException {
+        interruptAfter(TransferJob.CHECKPOINT_BYTES * 2);
+        File journalFile = journals.listFiles()[0];
+        long progress = TransferJob.findUnfinished(journals).get(0).getCompletedBytes();
+
+        // Half a PROGRESS record, as a crash mid-write would leave it
+        FileOutputStream out = new FileOutputStream(journalFile, true);
+        out.write(new byte[]{3, 0, 0});
+        out.close();
+
+        TransferJob job = TransferJob.findUnfinished(journals).get(0);
+        assertEquals(progress, job.getCompletedBytes());
+        assertTrue(job.run(new AtomicBoolean(), null));
+        assertSameContents(new File(source, "nested/large.bin"), new File(destination, "nested/large.bin"));
+    }
+
+    @Test
+    public void resume_recopiesAFinishedEmptyFileThatWentMissing() throws IOException {
+        // Sorts first, so it is done by the time the job is interrupted
+        writeRandom(new File(source, "0.txt"), 0, 5);
+        interruptAfter(TransferJob.CHECKPOINT_BYTES);
+        File copy = new File(destination, "0.txt");
+        assertTrue(copy.delete());
+
+        assertTrue(TransferJob.findUnfinished(journals).get(0).run(new AtomicBoolean(), null));
+        assertTrue(copy.isFile());
+    }
+
+    @Test
+    public void move_deletesSourcesOnlyAfterEverythingIsCopied() throws IOException {
+        byte[] expected = readFully(new File(source, "nested/large.bin"));
+
+        interruptAfter(TransferJob.CHECKPOINT_BYTES, TransferJournal.TYPE_MOVE);
+        assertTrue(new File(source, "a.txt").exists());
+        assertTrue(new File(source, "nested/large.bin").exists());
+
+        TransferJob job = TransferJob.findUnfinished(journals).get(0);
+        assertTrue(job.run(new AtomicBoolean(), null));
+        assertFalse(job.hasRemainingSources());
+        assertFalse(source.exists());
+        assertTrue(Arrays.equals(expected, readFully(new File(destination, "nested/large.bin"))));
+    }
+
+    @Test
+    public void discard_removesPartialFilesAndJournal() throws IOException {
+        interruptAfter(TransferJob.CHECKPOINT_BYTES);
+
+        TransferJob.findUnfinished(journals).get(0).discard();
+        assertTrue(new File(destination, "a.txt").exists());
+        assertFalse(new File(destination, "nested/large.bin").exists());
+        // Created by the job and left empty
+        assertFalse(new File(destination, "empty").exists());
+        assertEquals(0, journals.list().length);
+    }
+
+    @Test
+    public void discard_keepsExistingFilesTheJobNeverTouched() throws IOException {
+        File existing = new File(destination, "nested/large.bin");
+        writeRandom(existing, 50, 4);
+        byte[] expected = readFully(existing);
+
+        // Stops after a.txt, before the job reaches nested/large.bin
+        interruptAfter(1);
+        TransferJob.findUnfinished(journals).get(0).discard();
+
+        assertTrue(Arrays.equals(expected, readFully(existing)));
+        assertTrue(new File(destination, "a.txt").exists());
+        assertEquals(0, journals.list().length);
+    }
+
+    @Test
+    public void discard_leavesAJobThatFinishedSinceItWasFoundAlone() throws IOException {
+        interruptAfter(TransferJob.CHECKPOINT_BYTES);
+        TransferJob stale = TransferJob.findUnfinished(journals).get(0);
+        assertTrue(TransferJob.findUnfinished(journals).get(0).run(new AtomicBoolean(), null));
+
+        // Its journal still lists nested/large.bin as unfinished, the disk no longer does
+        stale.discard();
+        assertSameContents(new File(source, "nested/large.bin"), new File(destination, "nested/large.bin"));
+        assertTrue(new File(destination, "empty").isDirectory());
+    }
+
+    @Test(expected = IOException.class)
+    public void create_rejectsCopyIntoItself() throws IOException {
+        TransferJob.create(journals, TransferJournal.TYPE_COPY, source, new File(source, "nested/copy"));
+    }
+
+    private void interruptAfter(long bytes) throws IOException {
+        interruptAfter(bytes, TransferJournal.TYPE_COPY);
+    }
+
+    // Stops the job through its cancel flag, which checkpoints the exact position it reached
+    private void interruptAfter(final long bytes, int type) throws IOException {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        TransferJob job = TransferJob.create(journals, type, source, destination);
+        boolean finished = job.run(cancelled, new TransferJob.ProgressListener() {
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal) {
+                if (bytesDone >= bytes) {
+                    cancelled.set(true);
+                }
+            }
+        });
+        assertFalse(finished);
+    }
+
+    // Stands in for the process dying: the job stops mid-chunk without writing anything more
+    private void crashAfter(final long bytes) throws IOException {
+        TransferJob job = TransferJob.create(journals, TransferJournal.TYPE_COPY, source, destination);
+        try {
+            job.run(new AtomicBoolean(), new TransferJob.ProgressListener() {
+                @Override
+                public void onProgress(long bytesDone, long bytesTotal) {
+                    if (bytesDone >= bytes) {
+                        throw new IllegalStateException("crash");
+                    }
+                }
+            });
+            fail("Expected the job to crash");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static void writeRandom(File file, int size, long seed) throws IOException {
+        file.getParentFile().mkdirs();
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte readByte(File file, long position) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            in.seek(position);
+            return in.readByte();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeByte(File file, long position, byte value) throws IOException {
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            out.seek(position);
+            out.write(value);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                read += in.read(data, read, data.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static void assertSameContents(File expected, File actual) throws IOException {
+        assertTrue(Arrays.equals(readFully(expected), readFully(actual)));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.filemanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TransferManagerTest {
+
+    private static final int LARGE_SIZE = (int) (TransferJob.CHECKPOINT_BYTES * 3);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    // Stands in for the main thread: callbacks only run when the test drains the queue
+    private final BlockingQueue<Runnable> mainQueue = new LinkedBlockingQueue<>();
+    private TransferManager manager;
+    private File journals;
+    private File source;
+    private File destination;
+
+    @Before
+    public void setUp() throws IOException {
+        manager = new TransferManager(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                mainQueue.add(runnable);
+            }
+        });
+        journals = temporaryFolder.newFolder("journals");
+        source = temporaryFolder.newFolder("source");
+        destination = new File(temporaryFolder.getRoot(), "destination");
+        writeFile(new File(source, "a.txt"), 100);
+    }
+
+    @Test
+    public void start_refusesASecondTransferAndHoldsTheResultUntilAListenerAttaches() throws InterruptedException {
+        RecordingListener first = new RecordingListener();
+        manager.setListener(first);
+        assertTrue(manager.start(TransferJournal.TYPE_COPY, journals, source, destination));
+        TransferManager.Transfer transfer = first.progress.get(0);
+        assertFalse(manager.start(TransferJournal.TYPE_COPY, journals, source, destination));
+
+        // The activity is destroyed for a configuration change before the copy ends
+        manager.removeListener(first);
+        drainUntilStopped(transfer);
+        assertTrue(first.finished.isEmpty());
+        assertTrue(manager.isBusy());
+
+        RecordingListener second = new RecordingListener();
+        manager.setListener(second);
+        assertEquals(1, second.finished.size());
+        assertSame(transfer, second.finished.get(0));
+        assertTrue(transfer.isFinished());
+        assertFalse(manager.isBusy());
+        assertEquals(100, new File(destination, "a.txt").length());
+    }
+
+    @Test
+    public void setListener_handsTheRunningTransferToARecreatedListener() throws IOException, InterruptedException {
+        writeFile(new File(source, "large.bin"), LARGE_SIZE);
+        RecordingListener first = new RecordingListener();
+        manager.setListener(first);
+        assertTrue(manager.start(TransferJournal.TYPE_COPY, journals, source, destination));
+
+        manager.removeListener(first);
+        RecordingListener second = new RecordingListener();
+        manager.setListener(second);
+        TransferManager.Transfer transfer = second.progress.get(0);
+        assertSame(first.progress.get(0), transfer);
+
+        // The new activity's cancel button reaches the job the old one started
+        transfer.cancel();
+        drainUntilStopped(transfer);
+        assertEquals(1, second.finished.size());
+        assertFalse(transfer.isFinished());
+        assertNull(transfer.getError());
+        assertEquals(1, TransferJob.findUnfinished(journals).size());
+        assertTrue(first.finished.isEmpty());
+    }
+
+    @Test
+    public void removeListener_keepsAListenerThatReplacedIt() throws InterruptedException {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        manager.setListener(first);
+        manager.setListener(second);
+        manager.removeListener(first);
+
+        assertTrue(manager.start(TransferJournal.TYPE_COPY, journals, source, destination));
+        assertEquals(1, second.progress.size());
+        assertTrue(first.progress.isEmpty());
+
+        drainUntilStopped(second.progress.get(0));
+        assertEquals(1, second.finished.size());
+    }
+
+    @Test
+    public void resume_keepsTheQueuedJobFromBeingFoundOrDiscarded() throws IOException, InterruptedException {
+        writeFile(new File(source, "large.bin"), LARGE_SIZE);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        TransferJob interrupted = TransferJob.create(journals, TransferJournal.TYPE_COPY, source, destination);
+        assertFalse(interrupted.run(cancelled, new TransferJob.ProgressListener() {
+            @Override
+            public void onProgress(long bytesDone, long bytesTotal) {
+                if (bytesDone >= TransferJob.CHECKPOINT_BYTES) {
+                    cancelled.set(true);
+                }
+            }
+        }));
+        TransferJob job = TransferJob.findUnfinished(journals).get(0);
+
+        RecordingListener listener = new RecordingListener();
+        manager.setListener(listener);
+        assertTrue(manager.resume(job));
+        assertTrue(TransferJob.findUnfinished(journals).isEmpty());
+        // As from a dialog shown before the job was resumed
+        manager.discard(job);
+        drainUntilStopped(listener.progress.get(0));
+        assertTrue(listener.finished.get(0).isFinished());
+
+        // Runs after anything the discard queued
+        assertTrue(manager.start(TransferJournal.TYPE_COPY, journals, new File(source, "a.txt"),
+                new File(temporaryFolder.getRoot(), "a-copy.txt")));
+        drainUntilStopped(listener.progress.get(1));
+        assertEquals(LARGE_SIZE, new File(destination, "large.bin").length());
+        assertEquals(0, journals.list().length);
+    }
+
+    private void drainUntilStopped(TransferManager.Transfer transfer) throws InterruptedException {
+        while (!transfer.isStopped()) {
+            Runnable runnable = mainQueue.poll(30, TimeUnit.SECONDS);
+            assertNotNull("Transfer did not stop", runnable);
+            runnable.run();
+        }
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static class RecordingListener implements TransferManager.Listener {
+        final List<TransferManager.Transfer> progress = new ArrayList<>();
+        final List<TransferManager.Transfer> finished = new ArrayList<>();
+
+        @Override
+        public void onTransferProgress(TransferManager.Transfer transfer) {
+            progress.add(transfer);
+        }
+
+        @Override
+        public void onTransferFinished(TransferManager.Transfer transfer) {
+            finished.add(transfer);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.filemanager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrashManagerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File volume;
+    private TrashManager trash;
+
+    @Before
+    public void setUp() throws IOException {
+        volume = temporaryFolder.newFolder("volume");
+        trash = new TrashManager(Collections.singletonList(volume));
+    }
+
+    @Test
+    public void moveToTrash_renamesTreeAndRestoreBringsItBack() throws IOException {
+        File photos = new File(volume, "DCIM/Photos");
+        writeFile(new File(photos, "a.jpg"), 10);
+        writeFile(new File(photos, "nested/b.jpg"), 20);
+
+        trash.moveToTrash(photos);
+        assertFalse(photos.exists());
+
+        List<TrashManager.Item> items = trash.listItems();
+        assertEquals(1, items.size());
+        assertEquals("Photos", items.get(0).getName());
+        assertEquals(photos.getAbsolutePath(), items.get(0).getOriginalPath());
+
+        trash.restore(items.get(0));
+        assertEquals(20, new File(photos, "nested/b.jpg").length());
+        assertTrue(trash.listItems().isEmpty());
+    }
+
+    @Test
+    public void restore_refusesToOverwriteAndRecreatesMissingParent() throws IOException {
+        File file = new File(volume, "docs/report.txt");
+        writeFile(file, 5);
+        trash.moveToTrash(file);
+        writeFile(file, 1);
+
+        TrashManager.Item item = trash.listItems().get(0);
+        try {
+            trash.restore(item);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+
+        file.delete();
+        new File(volume, "docs").delete();
+        trash.restore(item);
+        assertEquals(5, file.length());
+    }
+
+    @Test
+    public void moveToTrash_rejectsFilesOutsideKnownVolumes() throws IOException {
+        File outside = temporaryFolder.newFile("outside.txt");
+        try {
+            trash.moveToTrash(outside);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+        }
+        assertTrue(outside.exists());
+    }
+
+    @Test
+    public void getVolumeRoot_prefersTheMostSpecificVolume() throws IOException {
+        File nested = new File(volume, "mnt/card");
+        TrashManager manager = new TrashManager(Arrays.asList(volume, nested));
+
+        assertEquals(nested.getAbsoluteFile(), manager.getVolumeRoot(new File(nested, "music/song.mp3")));
+        assertEquals(volume.getAbsoluteFile(), manager.getVolumeRoot(new File(volume, "mnt/other.txt")));
+        assertTrue(manager.isTrashDirectory(new File(volume, TrashManager.TRASH_DIRECTORY_NAME)));
+        assertFalse(manager.isTrashDirectory(new File(volume, "docs/" + TrashManager.TRASH_DIRECTORY_NAME)));
+    }
+
+    @Test
+    public void purge_evictsExpiredItemsThenOldestUntilWithinBudget() throws IOException {
+        File old = new File(volume, "old.bin");
+        File middle = new File(volume, "middle.bin");
+        File recent = new File(volume, "recent.bin");
+        writeFile(old, 100);
+        writeFile(middle, 300);
+        writeFile(recent, 300);
+        trash.moveToTrash(old);
+        trash.moveToTrash(middle);
+        trash.moveToTrash(recent);
+
+        long now = System.currentTimeMillis();
+
+        // Nothing expired and everything fits
+        trash.purge(volume, now, TrashManager.MAX_AGE_MILLIS, 1000);
+        assertEquals(3, trash.listItems().size());
+        assertEquals(300, trash.listItems().get(0).getSize());
+
+        // Over budget: the oldest items go until the rest fits
+        trash.purge(volume, now, TrashManager.MAX_AGE_MILLIS, 500);
+        List<TrashManager.Item> items = trash.listItems();
+        assertEquals(1, items.size());
+        assertEquals("recent.bin", items.get(0).getName());
+
+        // Past the age limit
+        trash.purge(volume, now + 1000, 0, 1000);
+        assertTrue(trash.listItems().isEmpty());
+        assertEquals(0, purgingEntries());
+    }
+
+    @Test
+    public void empty_deletesEverything() throws IOException {
+        writeFile(new File(volume, "a/b/c.txt"), 10);
+        writeFile(new File(volume, "d.txt"), 0);
+        trash.moveToTrash(new File(volume, "a"));
+        trash.moveToTrash(new File(volume, "d.txt"));
+
+        trash.empty();
+        assertTrue(trash.listItems().isEmpty());
+        assertEquals(0, purgingEntries());
+    }
+
+    private int purgingEntries() {
+        String[] entries = new File(new File(volume, TrashManager.TRASH_DIRECTORY_NAME), "purging").list();
+        return entries == null ? 0 : entries.length;
+    }
+
+    private static void writeFile(File file, int size) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+}
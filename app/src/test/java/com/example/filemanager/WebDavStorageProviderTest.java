@@ -0,0 +1,173 @@
+package com.example.filemanager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class WebDavStorageProviderTest {
+
+    private MockWebServer server;
+    private WebDavStorageProvider provider;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        provider = new WebDavStorageProvider(server.url("/dav/"), "user", "secret",
+                new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        provider.close();
+        server.shutdown();
+    }
+
+    @Test
+    public void list_returnsChildrenFromSinglePropfind() throws Exception {
+        server.enqueue(multistatus(
+                response("/dav/docs/", true, 0),
+                response("/dav/docs/notes%20final.txt", false, 42),
+                response("/dav/docs/photos/", true, 0)));
+
+        List<StorageEntry> entries = provider.list("/docs");
+
+        assertEquals(2, entries.size());
+        assertEquals("/docs/notes final.txt", entries.get(0).getPath());
+        assertEquals(42, entries.get(0).getLength());
+        assertFalse(entries.get(0).isDirectory());
+        assertEquals("/docs/photos", entries.get(1).getPath());
+        assertTrue(entries.get(1).isDirectory());
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("PROPFIND", request.getMethod());
+        assertEquals("1", request.getHeader("Depth"));
+        assertEquals("/dav/docs/", request.getPath());
+        assertNotNull(request.getHeader("Authorization"));
+    }
+
+    @Test
+    public void statAll_isServedFromListingCache() throws Exception {
+        server.enqueue(multistatus(
+                response("/dav/", true, 0),
+                response("/dav/a.txt", false, 1),
+                response("/dav/b.txt", false, 2)));
+        provider.list("/");
+
+        List<StorageEntry> entries = provider.statAll(Arrays.asList("/a.txt", "/b.txt"));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, entries.get(0).getLength());
+        assertEquals(2, entries.get(1).getLength());
+    }
+
+    @Test
+    public void statAll_batchesUncachedSiblingsIntoOneListing() throws Exception {
+        server.enqueue(multistatus(
+                response("/dav/logs/", true, 0),
+                response("/dav/logs/1.log", false, 10),
+                response("/dav/logs/2.log", false, 20),
+                response("/dav/logs/3.log", false, 30),
+                response("/dav/logs/4.log", false, 40)));
+
+        List<StorageEntry> entries = provider.statAll(Arrays.asList(
+                "/logs/1.log", "/logs/2.log", "/logs/3.log", "/logs/4.log", "/logs/missing.log"));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals("1", server.takeRequest().getHeader("Depth"));
+        assertEquals(40, entries.get(3).getLength());
+        assertNull(entries.get(4));
+    }
+
+    @Test
+    public void statAll_pipelinesScatteredStats() throws Exception {
+        // The stats run concurrently, so each response is picked by path rather than by arrival order
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                switch (request.getPath()) {
+                    case "/dav/x/one.txt":
+                        return multistatus(response("/dav/x/one.txt", false, 1));
+                    case "/dav/y/two.txt":
+                        return multistatus(response("/dav/y/two.txt", false, 2));
+                    case "/dav/w/four.txt":
+                        // A response about some other resource says nothing about this one
+                        return multistatus(response("/dav/w/other.txt", false, 4));
+                    default:
+                        return new MockResponse().setResponseCode(404);
+                }
+            }
+        });
+
+        List<StorageEntry> entries = provider.statAll(
+                Arrays.asList("/x/one.txt", "/y/two.txt", "/z/three.txt", "/w/four.txt"));
+
+        assertEquals(4, server.getRequestCount());
+        assertEquals(4, entries.size());
+        assertEquals("/x/one.txt", entries.get(0).getPath());
+        assertEquals(1, entries.get(0).getLength());
+        assertEquals("/y/two.txt", entries.get(1).getPath());
+        assertEquals(2, entries.get(1).getLength());
+        assertNull(entries.get(2));
+        assertNull(entries.get(3));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void stat_missingPathThrows() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        provider.stat("/nope.txt");
+    }
+
+    @Test
+    public void rename_invalidatesCachedEntry() throws Exception {
+        server.enqueue(multistatus(response("/dav/", true, 0), response("/dav/old.txt", false, 5)));
+        provider.list("/");
+        server.enqueue(new MockResponse().setResponseCode(201));
+
+        provider.rename("/old.txt", "/new.txt");
+
+        server.takeRequest();
+        RecordedRequest move = server.takeRequest();
+        assertEquals("MOVE", move.getMethod());
+        assertEquals(server.url("/dav/new.txt").toString(), move.getHeader("Destination"));
+
+        server.enqueue(new MockResponse().setResponseCode(404));
+        try {
+            provider.stat("/old.txt");
+            fail("Expected the renamed entry to be evicted from the cache");
+        } catch (FileNotFoundException expected) {
+        }
+    }
+
+    private static MockResponse multistatus(String... responses) {
+        StringBuilder body = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?><d:multistatus xmlns:d=\"DAV:\">");
+        for (String response : responses) {
+            body.append(response);
+        }
+        body.append("</d:multistatus>");
+        return new MockResponse().setResponseCode(207)
+                .setHeader("Content-Type", "application/xml; charset=utf-8")
+                .setBody(body.toString());
+    }
+
+    private static String response(String href, boolean directory, long length) {
+        return "<d:response><d:href>" + href + "</d:href><d:propstat><d:prop>"
+                + (directory ? "<d:resourcetype><d:collection/></d:resourcetype>" : "<d:resourcetype/>")
+                + (directory ? "" : "<d:getcontentlength>" + length + "</d:getcontentlength>")
+                + "<d:getlastmodified>Mon, 12 Jan 1998 09:25:56 GMT</d:getlastmodified>"
+                + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat></d:response>";
+    }
+}